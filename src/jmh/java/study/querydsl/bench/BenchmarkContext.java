@@ -0,0 +1,91 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.Application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 임베디드 H2 에 member/team 데이터를 채우고 스프링 컨텍스트를 띄운다.
+ * count 캐시(CountCache)는 꺼 두므로 페이징 벤치마크는 매번 count 쿼리를 실행한다.
+ * 회원 수, 팀 수는 -p memberCount=1000000 -p teamCount=100 처럼 지정한다.
+ *
+ * member_id, team_id 는 1 부터 연속된 값으로 넣는다.
+ * 회원 i 의 username 은 "member" + i, age 는 i % 100, 팀은 "team" + (i % teamCount)
+ */
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"10000"})
+    public int memberCount;
+
+    @Param({"10"})
+    public int teamCount;
+
+    public ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "decorator.datasource.enabled=false",
+                        //count 캐시가 있으면 워밍업 이후 count 쿼리가 실행되지 않아서 캐시를 측정하게 된다
+                        "member.count-cache.max-size=0",
+                        "logging.level.root=warn"
+                )
+                .run();
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> teams = new ArrayList<>();
+        for (long i = 0; i < teamCount; i++) {
+            teams.add(new Object[]{i + 1, "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (team_id, name) values (?, ?)", teams);
+
+        List<Object[]> members = new ArrayList<>(BATCH_SIZE);
+        for (long i = 1; i <= memberCount; i++) {
+            members.add(new Object[]{i, "member" + i, (int) (i % 100), i % teamCount + 1});
+            if (members.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+                members.clear();
+            }
+        }
+        if (!members.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+        }
+
+        //JPA 로 저장하는 벤치마크가 직접 넣은 id 와 겹치지 않도록 pooled 시퀀스를 뒤로 민다 (allocationSize 50)
+        jdbcTemplate.execute("alter sequence member_seq restart with " + (memberCount + 100));
+        jdbcTemplate.execute("alter sequence team_seq restart with " + (teamCount + 100));
+    }
+
+}
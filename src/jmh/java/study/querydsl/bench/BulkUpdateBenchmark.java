@@ -0,0 +1,68 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 벌크 update vs 엔티티 조회 후 변경 감지(dirty checking)
+ * 같은 대상(age < 10, 전체의 약 10%)을 수정하고 매번 롤백해서 데이터는 그대로 유지한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkUpdateBenchmark {
+
+    JPAQueryFactory queryFactory;
+    EntityManager em;
+    TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        em = context.getBean(EntityManager.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @Benchmark
+    public long bulkUpdate() {
+        return transactionTemplate.execute(status -> {
+            long count = queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.age.lt(10))
+                    .execute();
+            status.setRollbackOnly();
+            return count;
+        });
+    }
+
+    @Benchmark
+    public long dirtyChecking() {
+        return transactionTemplate.execute(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .where(member.age.lt(10))
+                    .fetch();
+            members.forEach(m -> m.setAge(m.getAge() + 1));
+            em.flush();
+            status.setRollbackOnly();
+            return (long) members.size();
+        });
+    }
+
+}
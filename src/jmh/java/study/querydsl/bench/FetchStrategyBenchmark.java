@@ -0,0 +1,67 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member.team 페치 조인 vs 지연 로딩(N+1)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FetchStrategyBenchmark {
+
+    @Param({"100"})
+    public int rows;
+
+    JPAQueryFactory queryFactory;
+    TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .limit(rows)
+                    .fetch();
+            members.forEach(m -> blackhole.consume(m.getTeam().getName()));
+        });
+    }
+
+    @Benchmark
+    public void lazyLoading(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .limit(rows)
+                    .fetch();
+            members.forEach(m -> blackhole.consume(m.getTeam().getName()));
+        });
+    }
+
+}
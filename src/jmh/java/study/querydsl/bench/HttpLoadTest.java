@@ -0,0 +1,78 @@
+package study.querydsl.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 동시 클라이언트 수를 고정하고 일정 시간 동안 요청을 보내서 처리량과 지연시간(p50/p99)을 측정한다.
+ * (JMH 벤치마크가 아니라 실행 중인 서버를 대상으로 하는 main)
+ *
+ * 플랫폼 스레드 Tomcat 과 virtual 프로파일(Java 21)을 같은 조건으로 비교한다.
+ *   java -jar build/libs/jpa-querydsl-0.0.1-SNAPSHOT.jar
+ *   java -jar build/libs/jpa-querydsl-0.0.1-SNAPSHOT.jar --spring.profiles.active=virtual
+ *   java -cp build/libs/jpa-querydsl-0.0.1-SNAPSHOT-jmh.jar study.querydsl.bench.HttpLoadTest \
+ *        "http://localhost:8080/v3/members?page=0&size=20" 2000 60
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/v3/members?page=0&size=20");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+
+        Semaphore inFlight = new Semaphore(clients);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + Duration.ofSeconds(seconds).toNanos();
+
+        //클라이언트 하나 = 응답을 받으면 바로 다음 요청을 보내는 루프
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else {
+                            latencies.add(System.nanoTime() - sent);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(clients);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("url=%s clients=%d duration=%.1fs%n", uri, clients, elapsed);
+        System.out.printf("requests=%d errors=%d throughput=%.1f req/s%n", sorted.length, errors.get(), sorted.length / elapsed);
+        System.out.printf("p50=%.1fms p99=%.1fms max=%.1fms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.exit(0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+}
@@ -0,0 +1,126 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchQueryTemplate;
+import study.querydsl.repository.MemberTestRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * searchPageSimple vs searchPageComplex, 그리고 같은 위치의 페이지를 offset 과 키셋(커서)으로 조회할 때의 비교
+ * searchPageComplex 의 count 캐시는 BenchmarkContext 에서 꺼 두었으므로 두 방식 모두 count 쿼리를 실행한다.
+ * page 가 커질수록 offset 방식은 느려지고 키셋 방식은 일정해야 한다.
+ * searchPageByIds 는 id 만 offset 페이징 한 뒤 해당 행만 조인하는 2단계 방식 (searchPageComplex 와 비교)
+ * searchPageComplex 는 SingleFlightExecutor 를 거치고 정렬이 없으므로, 페이징 방식만 비교할 때는
+ * count 없이 같은 정렬(member.id)로 컨텐츠만 조회하는 contentByOffset, contentByIds 를 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberPagingBenchmark {
+
+    @Param({"0", "100", "400"})
+    public int page;
+
+    @Param({"20"})
+    public int size;
+
+    MemberRepository memberRepository;
+    MemberTestRepository memberTestRepository;
+    MemberSearchQueryTemplate searchQueryTemplate;
+    JPAQueryFactory queryFactory;
+    MemberSearchCondition condition;
+    PageRequest pageRequest;
+    MemberCursor cursor;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberRepository = context.getBean(MemberRepository.class);
+        memberTestRepository = context.getBean(MemberTestRepository.class);
+        searchQueryTemplate = context.getBean(MemberSearchQueryTemplate.class);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        condition = new MemberSearchCondition();
+        pageRequest = PageRequest.of(page, size);
+
+        //member_id 가 1 부터 연속이므로 page 번째 페이지 직전 회원 id 는 page * size
+        long lastId = (long) page * size;
+        cursor = lastId == 0 ? MemberCursor.first(MemberCursor.SortKey.ID)
+                : MemberCursor.after(MemberCursor.SortKey.ID, new MemberTeamDto(lastId, null, 0, null, null));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageByIds() {
+        return memberTestRepository.searchPageByIds(condition, pageRequest);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> contentByOffset() {
+        return searchQueryTemplate.content(condition)
+                .orderBy(member.id.asc())
+                .offset(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize())
+                .fetch();
+    }
+
+    /**
+     * searchPageByIds 의 컨텐츠 부분 (id 페이징 후 in 절 조회, 조건이 없으므로 1단계에서 team 조인 없음)
+     */
+    @Benchmark
+    public List<MemberTeamDto> contentByIds() {
+        List<Long> ids = queryFactory
+                .select(member.id)
+                .from(member)
+                .orderBy(member.id.asc())
+                .offset(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize())
+                .fetch();
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids))
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+
+    @Benchmark
+    public CursorSlice<MemberTeamDto> searchByCursor() {
+        return memberRepository.searchByCursor(condition, cursor, size);
+    }
+
+}
@@ -0,0 +1,60 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * search (조건 조합별 쿼리 템플릿) vs searchByBuilder (공유 Predicate 로 호출마다 쿼리 생성)
+ * findAll (JPQL) vs findAll_Querydsl
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchBenchmark {
+
+    MemberJpaRepository memberJpaRepository;
+    MemberSearchCondition condition;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(31);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<Member> findAll() {
+        return memberJpaRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Member> findAll_Querydsl() {
+        return memberJpaRepository.findAll_Querydsl();
+    }
+
+}
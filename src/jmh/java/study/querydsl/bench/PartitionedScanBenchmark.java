@@ -0,0 +1,68 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.PartitionedScanner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 전체 회원 조회: 한 커넥션에서 쿼리 하나(singleQuery) vs member_id 범위로 나눠서 동시에 조회(partitioned)
+ * partitions=1 은 PartitionedScanner 자체의 비용(큐, 별도 EntityManager)만 더해진 값이다.
+ * 풀 스레드 수는 코어 수(member.partitioned-scan.parallelism 기본값)이므로 8 코어 장비에서 partitions 1 ~ 8 을 비교한다.
+ *
+ * java -jar build/libs/jpa-querydsl-0.0.1-SNAPSHOT-jmh.jar PartitionedScan -p memberCount=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PartitionedScanBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    int partitions;
+
+    JPAQueryFactory queryFactory;
+    PartitionedScanner partitionedScanner;
+    TransactionTemplate readOnlyTransaction;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        partitionedScanner = context.getBean(PartitionedScanner.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 기준값 (partitions 와 상관없음)
+     */
+    @Benchmark
+    public long singleQuery() {
+        return readOnlyTransaction.execute(status -> {
+            try (Stream<Member> stream = queryFactory.selectFrom(member).stream()) {
+                return stream.mapToLong(Member::getAge).sum();
+            }
+        });
+    }
+
+    @Benchmark
+    public long partitioned() {
+        try (Stream<Member> stream = partitionedScanner.scan(queryFactory.selectFrom(member), member.id, partitions)) {
+            return stream.mapToLong(Member::getAge).sum();
+        }
+    }
+
+}
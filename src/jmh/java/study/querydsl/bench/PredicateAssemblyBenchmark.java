@@ -0,0 +1,133 @@
+package study.querydsl.bench;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberSearchPredicates;
+import study.querydsl.repository.MemberSearchQueryTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition where 조건 만들기: 호출마다 BooleanExpression 생성(usernameEq ...) vs BooleanBuilder vs MemberSearchPredicates
+ * 검색 쿼리 전체 만들기: 호출마다 select/from/join/where 조립(helperQuery) vs MemberSearchQueryTemplate.content (템플릿 복사 + 바인딩)
+ * DB 를 조회하지 않고 만들기만 비교한다. (쿼리 빈을 쓰기 위해 BenchmarkContext 로 컨텍스트만 띄운다)
+ * 할당량은 gc 프로파일러로 본다. (gc.alloc.rate.norm = 호출 한 번당 할당 바이트)
+ *
+ * java -jar build/libs/jpa-querydsl-0.0.1-SNAPSHOT-jmh.jar PredicateAssembly -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PredicateAssemblyBenchmark {
+
+    MemberSearchCondition condition;
+    JPAQueryFactory queryFactory;
+    MemberSearchQueryTemplate searchQueryTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(31);
+
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        searchQueryTemplate = context.getBean(MemberSearchQueryTemplate.class);
+    }
+
+    @Benchmark
+    public Predicate[] helperExpressions() {
+        return new Predicate[]{
+                usernameEq(condition.getUsername()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    @Benchmark
+    public Predicate booleanBuilder() {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (hasText(condition.getUsername())) {
+            builder.and(member.username.eq(condition.getUsername()));
+        }
+        if (hasText(condition.getTeamName())) {
+            builder.and(team.name.eq(condition.getTeamName()));
+        }
+        if (condition.getAgeGoe() != null) {
+            builder.and(member.age.goe(condition.getAgeGoe()));
+        }
+        if (condition.getAgeLoe() != null) {
+            builder.and(member.age.loe(condition.getAgeLoe()));
+        }
+        return builder;
+    }
+
+    @Benchmark
+    public Predicate[] sharedPredicates() {
+        return MemberSearchPredicates.where(condition);
+    }
+
+    /**
+     * MemberRepositoryImpl 이전 방식: 호출마다 프로젝션, 조인, 조건을 새로 만든다
+     */
+    @Benchmark
+    public JPAQuery<MemberTeamDto> helperQuery() {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+    }
+
+    /**
+     * 조건 조합별로 만들어 둔 템플릿을 복사(clone)하고 Param 값만 바인딩
+     */
+    @Benchmark
+    public JPAQuery<MemberTeamDto> templateQuery() {
+        return searchQueryTemplate.content(condition);
+    }
+
+    private static BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+}
@@ -0,0 +1,56 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 전체 회원 엔티티 조회: 일반(영속 상태, 커밋 시 dirty checking) vs 읽기 전용 힌트 vs StatelessSession
+ * 할당량/GC 비교는 gc 프로파일러로 본다. (gc.alloc.rate.norm = 호출 한 번당 할당 바이트)
+ *
+ * java -jar build/libs/jpa-querydsl-0.0.1-SNAPSHOT-jmh.jar ReadOnlyQuery -p memberCount=1000000 -prof gc -jvmArgs -Xmx2g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadOnlyQueryBenchmark {
+
+    MemberJpaRepository memberJpaRepository;
+    TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        //읽기 전용 트랜잭션은 세션 전체를 읽기 전용으로 만들기 때문에 일반 트랜잭션에서 비교한다
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @Benchmark
+    public void managed(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status ->
+                blackhole.consume(memberJpaRepository.findAll_Querydsl()));
+    }
+
+    @Benchmark
+    public void readOnlyHint(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status ->
+                blackhole.consume(memberJpaRepository.findAll_QuerydslReadOnly()));
+    }
+
+    @Benchmark
+    public void stateless(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status ->
+                blackhole.consume(memberJpaRepository.forEachStateless(1000, blackhole::consume)));
+    }
+
+}
@@ -1,18 +1,25 @@
 package study.querydsl;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import study.querydsl.repository.support.BulkWriteListener;
+import study.querydsl.repository.support.QueryTimer;
+import study.querydsl.repository.support.TimedJPAQueryFactory;
 
 import javax.persistence.EntityManager;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 //@EnableJpaAuditing(modifyOnCreate = false) //생성시에는  modifyOnCreate null 값처리
 @EnableJpaAuditing(modifyOnCreate = false)
+@EnableScheduling
 @SpringBootApplication
 public class Application {
 
@@ -26,9 +33,13 @@ public class Application {
 		return () -> Optional.of(UUID.randomUUID().toString());
 	}
 
+	/**
+	 * 쿼리마다 실행 시간을 querydsl.query 메트릭으로 남긴다 (느린 쿼리는 querydsl.slow-query-threshold 기준으로 경고 로그)
+	 * 벌크 update/delete 는 실행 전후에 BulkWriteListener(TeamStatsMaintainer) 를 호출한다
+	 */
 	@Bean
-	public JPAQueryFactory queryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	public JPAQueryFactory queryFactory(EntityManager em, QueryTimer queryTimer, ObjectProvider<BulkWriteListener> bulkWriteListeners) {
+		return new TimedJPAQueryFactory(em, queryTimer, bulkWriteListeners.orderedStream().collect(Collectors.toList()));
 	}
 
 }
@@ -3,12 +3,10 @@ package study.querydsl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
+import study.querydsl.dto.MemberLoadDto;
+import study.querydsl.repository.MemberBulkLoader;
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
+import java.util.stream.IntStream;
 @Profile("local")
 @Component
 @RequiredArgsConstructor
@@ -19,19 +17,12 @@ public class InitMember {
         initMemberService.init();
     }
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService {
-        @PersistenceContext
-        EntityManager em;
-        @Transactional
+        private final MemberBulkLoader memberBulkLoader;
         public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
+            memberBulkLoader.load(IntStream.range(0, 100)
+                    .mapToObj(i -> new MemberLoadDto("member" + i, i, i % 2 == 0 ? "teamA" : "teamB")));
         }
     }
 }
\ No newline at end of file
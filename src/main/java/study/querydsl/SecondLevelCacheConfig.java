@@ -0,0 +1,58 @@
+package study.querydsl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Hibernate 2차 캐시 (JCache + Ehcache, 리전 설정은 ehcache.xml)
+ * Team 엔티티를 캐시하고, 리전별 hit/miss/put 을 메트릭으로 노출한다.
+ * Team.members 컬렉션은 캐시하지 않는다. (컬렉션 캐시에는 id 만 있어서 캐시되지 않는 Member 를 한 건씩 다시 조회한다)
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+            properties.put("hibernate.javax.cache.uri", "classpath:ehcache.xml");
+        };
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            //generate_statistics 설정은 세션마다 통계 로그를 남기므로 통계 수집만 켠다
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                register(registry, statistics, region, "hit", CacheRegionStatistics::getHitCount);
+                register(registry, statistics, region, "miss", CacheRegionStatistics::getMissCount);
+                register(registry, statistics, region, "put", CacheRegionStatistics::getPutCount);
+            }
+        };
+    }
+
+    private static void register(MeterRegistry registry, Statistics statistics, String region, String result,
+                                 ToDoubleFunction<CacheRegionStatistics> count) {
+        FunctionCounter.builder("hibernate.second.level.cache.requests", statistics,
+                        s -> count.applyAsDouble(s.getDomainDataRegionStatistics(region)))
+                .tag("region", region)
+                .tag("result", result)
+                .register(registry);
+    }
+
+}
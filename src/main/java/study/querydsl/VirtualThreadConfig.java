@@ -0,0 +1,72 @@
+package study.querydsl;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import study.querydsl.repository.support.QueryThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * virtual 프로파일 (Java 21 이상에서 실행): Tomcat 요청 처리와 MVC 비동기 처리(StreamingResponseBody 등)를 가상 스레드에서 실행한다.
+ * 소스는 Java 17 로 컴파일하므로 Executors.newVirtualThreadPerTaskExecutor() 는 리플렉션으로 찾는다.
+ *
+ * 스레드 수 대신 커넥션 풀이 동시 DB 작업 수를 제한하므로 spring.datasource.hikari.maximum-pool-size 로 조절한다.
+ * application-virtual.properties 에서 open-in-view 를 끈다. (요청마다 EntityManager 와 커넥션을 스레드에 묶어두지 않도록)
+ * AsyncQueryExecutor, ParallelCountExecutor 풀의 스레드도 가상 스레드로 만든다. (QueryThreadFactory, 풀 크기 제한은 그대로)
+ *
+ * 캐리어 스레드에 고정(pinning)되는 곳 (Java 21~23, -Djdk.tracePinnedThreads=short 로 확인)
+ * - JDBC 드라이버: H2, MySQL Connector/J 8.0 은 synchronized 안에서 소켓/파일 I/O 를 기다린다.
+ *   동시에 고정될 수 있는 수는 커넥션 풀 크기 이하이므로 maximum-pool-size 를 캐리어 수에 맞추거나 Java 24 이상(JEP 491)을 사용한다.
+ * - 애플리케이션 코드는 synchronized 안에서 쿼리를 실행하지 않는다. (CountCache 는 잠금 밖에서 count 쿼리 실행)
+ * - QueryCounter 의 ThreadLocal 은 고정과 상관없고, 구간이 끝나면 지우므로 요청마다 만들어지는 가상 스레드에 남지 않는다.
+ *
+ * java -jar app.jar --spring.profiles.active=virtual
+ */
+@Configuration
+@Profile("virtual")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("virtual 프로파일은 Java 21 이상이 필요합니다 (현재 "
+                    + System.getProperty("java.version") + ")", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("가상 스레드 Executor 생성 실패", e);
+        }
+    }
+
+    @Bean
+    public QueryThreadFactory virtualQueryThreadFactory() {
+        return namePrefix -> {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("가상 스레드 ThreadFactory 생성 실패", e);
+            }
+        };
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+}
@@ -1,16 +1,37 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.InvalidCursorException;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamStatsDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamStatsRepository;
+import study.querydsl.repository.support.CountStrategy;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,12 +39,44 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final TeamStatsRepository teamStatsRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.export.fetch-size:1000}")
+    private int exportFetchSize;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
         return memberJpaRepository.search(condition);
     }
 
+    /**
+     * 검색 결과를 NDJSON(한 줄에 MemberTeamDto 하나)으로 읽는 즉시 응답에 쓴다.
+     * 결과 건수와 상관없이 List 를 만들지 않는다.
+     */
+    //http://localhost:8080/v1/members/export?teamName=teamA
+    @GetMapping("/v1/members/export")
+    public ResponseEntity<StreamingResponseBody> exportMemberV1(MemberSearchCondition condition){
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                memberJpaRepository.searchForEach(condition, exportFetchSize, dto -> {
+                    try {
+                        generator.writeObject(dto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeRaw('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
 
     //http://localhost:8080/v2/members?page=0&size=20
     @GetMapping("/v2/members")
@@ -33,11 +86,61 @@ public class MemberController {
 
     //http://localhost:8080/v3/members?size=5&page=2
     //http://localhost:8080/v3/members?page=0&size=20
+    //http://localhost:8080/v3/members?page=0&size=20&countStrategy=CAPPED
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto>  searchMemberV3(MemberSearchCondition condition, Pageable pageable){
-        return memberRepository.searchPageComplex(condition,  pageable);
+    public Page<MemberTeamDto>  searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                               @RequestParam(defaultValue = "EXACT") CountStrategy countStrategy){
+        return memberRepository.searchPageComplex(condition,  pageable, countStrategy);
+    }
+
+    /**
+     * 조회는 AsyncQueryExecutor 스레드에서 실행되고 요청 스레드는 바로 반환된다.
+     * 동시 실행 수를 넘어서 대기열까지 가득 차면 503
+     */
+    //http://localhost:8080/v3/members/async?page=0&size=20
+    @GetMapping("/v3/members/async")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable){
+        return memberRepository.searchPageAsync(condition, pageable);
+    }
+
+    //http://localhost:8080/v1/members/async?teamName=teamA
+    @GetMapping("/v1/members/async")
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1Async(MemberSearchCondition condition){
+        return memberRepository.searchAsync(condition);
     }
 
+    //http://localhost:8080/v4/members?size=20&sort=AGE
+    //http://localhost:8080/v4/members?size=20&cursor={이전 응답의 nextCursor}
+    @GetMapping("/v4/members")
+    public CursorSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "ID") MemberCursor.SortKey sort,
+                                                     @RequestParam(defaultValue = "20") int size){
+        //커서가 있으면 커서에 담긴 정렬 키를 그대로 사용
+        MemberCursor memberCursor = cursor != null ? MemberCursor.decode(cursor) : MemberCursor.first(sort);
+        return memberRepository.searchByCursor(condition, memberCursor, Math.max(1, Math.min(size, 2000)));
+    }
+
+    //http://localhost:8080/v1/teams/stats
+    @GetMapping("/v1/teams/stats")
+    public List<TeamStatsDto> teamStatsV1(){
+        return teamStatsRepository.findAll();
+    }
+
+    /**
+     * 커서 해석 실패만 400 으로 처리 (다른 IllegalArgumentException 은 서버 오류로 남긴다)
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String invalidCursor(InvalidCursorException e){
+        return "잘못된 커서입니다.";
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String busy(RejectedExecutionException e){
+        return "조회 요청이 많아서 처리할 수 없습니다. 잠시 후 다시 시도해 주세요.";
+    }
 
 
 
@@ -0,0 +1,49 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import study.querydsl.repository.support.QueryCounter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청 하나에서 실행된 statement 수(select, insert/update/delete)를 로그로 남긴다.
+ * open-in-view 로 뷰/직렬화 단계에서 일어나는 지연 로딩(N+1)까지 포함된다.
+ */
+@Slf4j
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCounter queryCounter;
+    private final int requestMax;
+
+    public QueryCountFilter(QueryCounter queryCounter,
+                            @Value("${member.query-budget.request-max:20}") int requestMax) {
+        this.queryCounter = queryCounter;
+        this.requestMax = requestMax;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.Scope scope = queryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+            long count = scope.getCount();
+            if (count > requestMax) {
+                log.warn("{} {} 쿼리 {} 건 (기준 {} 건)", request.getMethod(), request.getRequestURI(), count, requestMax);
+            } else {
+                log.debug("{} {} 쿼리 {} 건", request.getMethod(), request.getRequestURI(), count);
+            }
+        }
+    }
+
+}
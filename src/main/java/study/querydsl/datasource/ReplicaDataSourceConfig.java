@@ -0,0 +1,54 @@
+package study.querydsl.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * member.datasource.replicas 가 설정되어 있을 때만 spring.datasource(프라이머리) + 레플리카 라우팅 DataSource 를 만든다.
+ * RoutingDataSource 는 빈으로 등록하지 않는다. (p6spy 가 DataSource 빈마다 감싸서 쿼리가 두 번 기록되지 않도록)
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ReplicaProperties.class)
+@ConditionalOnProperty(prefix = "member.datasource", name = "replicas[0].url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceProperties dataSourceProperties, ReplicaProperties replicaProperties) {
+        DataSource primary = dataSourceProperties.initializeDataSourceBuilder().build();
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaProperties.Replica> replicaList = replicaProperties.getReplicas();
+        for (int i = 0; i < replicaList.size(); i++) {
+            ReplicaProperties.Replica replica = replicaList.get(i);
+            replicas.put("replica-" + i, DataSourceBuilder.create()
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(replica.getUrl())
+                    .username(replica.getUsername() != null ? replica.getUsername() : dataSourceProperties.determineUsername())
+                    .password(replica.getPassword() != null ? replica.getPassword() : dataSourceProperties.determinePassword())
+                    .build());
+        }
+
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(new ReplicaRoutingDataSource(primary, replicas),
+                replicaProperties.getLagQuery(), replicaProperties.getMaxLag());
+        monitor.check();
+        return monitor;
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaLagMonitor replicaLagMonitor) {
+        return new LazyConnectionDataSourceProxy(replicaLagMonitor.getRoutingDataSource());
+    }
+
+}
@@ -0,0 +1,84 @@
+package study.querydsl.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 레플리카마다 지연(lag-query 결과, 초)을 확인해서 max-lag 이하인 레플리카만 라우팅 대상으로 남긴다.
+ * lag-query 가 없으면 커넥션 유효성만 확인한다.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final String lagQuery;
+    private final Duration maxLag;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource routingDataSource, String lagQuery, Duration maxLag) {
+        this.routingDataSource = routingDataSource;
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+    }
+
+    public ReplicaRoutingDataSource getRoutingDataSource() {
+        return routingDataSource;
+    }
+
+    @Scheduled(fixedDelayString = "${member.datasource.lag-check-interval-ms:5000}")
+    public void check() {
+        List<String> available = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : routingDataSource.getReplicas().entrySet()) {
+            if (isAvailable(replica.getKey(), replica.getValue())) {
+                available.add(replica.getKey());
+            }
+        }
+        if (available.isEmpty()) {
+            log.warn("사용 가능한 레플리카가 없어서 읽기 전용 트랜잭션도 프라이머리로 보냅니다");
+        }
+        routingDataSource.setAvailableReplicas(available);
+    }
+
+    /**
+     * 빈 종료 시 프라이머리/레플리카 커넥션 풀을 닫는다
+     */
+    public void close() throws Exception {
+        for (DataSource dataSource : routingDataSource.getResolvedDataSources().values()) {
+            if (dataSource instanceof AutoCloseable) {
+                ((AutoCloseable) dataSource).close();
+            }
+        }
+    }
+
+    private boolean isAvailable(String key, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!hasText(lagQuery)) {
+                return connection.isValid(1);
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                long lagSeconds = rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+                if (lagSeconds > maxLag.getSeconds()) {
+                    log.warn("레플리카 {} 지연 {}초 (허용 {}초), 라우팅에서 제외", key, lagSeconds, maxLag.getSeconds());
+                    return false;
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            log.warn("레플리카 {} 확인 실패, 라우팅에서 제외: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package study.querydsl.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * member.datasource.replicas[0].url=jdbc:mysql://replica1/querydsl
+ * member.datasource.replicas[0].username=  (없으면 spring.datasource 값 사용)
+ * member.datasource.lag-query=select timestampdiff(second, max(ts), now()) from heartbeat
+ * member.datasource.max-lag=5s
+ * member.datasource.lag-check-interval-ms=5000
+ */
+@Data
+@ConfigurationProperties("member.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** 레플리카 지연(초)을 한 컬럼으로 반환하는 쿼리 */
+    private String lagQuery;
+
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+}
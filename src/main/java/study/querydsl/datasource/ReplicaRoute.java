@@ -0,0 +1,53 @@
+package study.querydsl.datasource;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 스프링 트랜잭션의 readOnly 표시 대신 현재 스레드의 조회를 레플리카로 보내도록 직접 지정한다. (ReplicaRoutingDataSource 가 먼저 확인)
+ * 스프링 트랜잭션 밖에서 별도 EntityManager 로 조회하는 경우(ParallelCountExecutor, PartitionedScanner)에 사용한다.
+ *
+ * 같은 ReplicaRoute 로 실행하는 조회는 여러 스레드에 나뉘어 있어도 처음 선택된 레플리카를 함께 사용하므로
+ * 나눠서 실행하는 쿼리(컨텐츠/count, id 범위별 조회)가 같은 복제 지연 시점의 데이터를 본다.
+ * 단, 이미 커넥션을 얻은 트랜잭션 안의 쿼리는 그 커넥션을 그대로 사용한다.
+ */
+public final class ReplicaRoute {
+
+    private static final ThreadLocal<ReplicaRoute> CURRENT = new ThreadLocal<>();
+
+    private String key;
+
+    public <T> T call(Supplier<T> action) {
+        ReplicaRoute previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    static ReplicaRoute current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param chooser 이전에 선택된 키(없으면 null)를 받아서 사용할 키를 반환
+     */
+    synchronized String resolve(Function<String, String> chooser) {
+        key = chooser.apply(key);
+        return key;
+    }
+
+}
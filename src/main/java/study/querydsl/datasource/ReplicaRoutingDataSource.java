@@ -0,0 +1,78 @@
+package study.querydsl.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 레플리카로, 나머지는 모두 프라이머리로 보낸다.
+ * 사용 가능한 레플리카(ReplicaLagMonitor 가 갱신) 사이에서는 라운드 로빈, 하나도 없으면 프라이머리로 보낸다.
+ * ReplicaRoute 로 지정된 조회는 트랜잭션과 상관없이 레플리카로 보내고, 같은 라우트에서는 처음 선택한 레플리카를 계속 사용한다.
+ *
+ * 트랜잭션 시작 시점에는 아직 readOnly 표시가 되어 있지 않으므로 반드시 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 쿼리를 실행할 때 커넥션을 얻도록 해야 한다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final Map<String, DataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> availableReplicas = List.of();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas) {
+        this.replicas = new LinkedHashMap<>(replicas);
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ReplicaRoute route = ReplicaRoute.current();
+        if (route != null) {
+            return route.resolve(this::chooseReplica);
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        return chooseReplica(null);
+    }
+
+    /**
+     * @param pinned 같은 라우트에서 이전에 선택한 키 (그 사이 지연이 커져서 빠졌으면 다시 고른다)
+     */
+    private String chooseReplica(String pinned) {
+        List<String> available = availableReplicas;
+        if (pinned != null && (pinned.equals(PRIMARY) || available.contains(pinned))) {
+            return pinned;
+        }
+        if (available.isEmpty()) {
+            return PRIMARY;
+        }
+        return available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public List<String> getAvailableReplicas() {
+        return availableReplicas;
+    }
+
+    public void setAvailableReplicas(Collection<String> keys) {
+        this.availableReplicas = List.copyOf(keys);
+    }
+
+}
@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 키셋 페이징 결과
+ * 전체 카운트 없이 다음 페이지 커서만 내려준다.
+ */
+@Getter
+public class CursorSlice<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+    private final boolean hasNext;
+
+    public CursorSlice(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = nextCursor != null;
+    }
+
+}
@@ -0,0 +1,12 @@
+package study.querydsl.dto;
+
+/**
+ * 클라이언트가 보낸 커서를 해석할 수 없음 (MemberController 에서 400)
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String cursor, Throwable cause) {
+        super("Invalid member cursor: " + cursor, cause);
+    }
+
+}
@@ -0,0 +1,86 @@
+package study.querydsl.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징 커서
+ * 마지막으로 조회한 (정렬 키, member.id) 를 담고, 클라이언트에는 Base64 문자열로만 노출한다.
+ * username 은 null 일 수 있으므로 값이 있으면 VALUE 를 앞에 붙이고, null 이면 비워서 문자열 "null" 과 구분한다.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberCursor {
+
+    public enum SortKey {ID, USERNAME, AGE}
+
+    private static final String DELIMITER = ":";
+    private static final String VALUE = "=";
+
+    private final SortKey sortKey;
+    private final Long lastId;
+    private final String lastValue;
+
+    public static MemberCursor first(SortKey sortKey) {
+        return new MemberCursor(sortKey, null, null);
+    }
+
+    public static MemberCursor after(SortKey sortKey, MemberTeamDto last) {
+        String lastValue;
+        switch (sortKey) {
+            case USERNAME:
+                lastValue = last.getUsername();
+                break;
+            case AGE:
+                lastValue = String.valueOf(last.getAge());
+                break;
+            default:
+                lastValue = null;
+        }
+        return new MemberCursor(sortKey, last.getMemberId(), lastValue);
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public int getLastAge() {
+        return Integer.parseInt(lastValue);
+    }
+
+    public String encode() {
+        String raw = sortKey.name() + DELIMITER + lastId + DELIMITER + (lastValue == null ? "" : VALUE + lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MemberCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            //username 에 구분자가 들어갈 수 있으므로 값은 항상 마지막에 둔다
+            String[] parts = raw.split(DELIMITER, 3);
+            SortKey sortKey = SortKey.valueOf(parts[0]);
+            MemberCursor decoded = new MemberCursor(sortKey, Long.valueOf(parts[1]), decodeValue(parts[2]));
+            if (sortKey == SortKey.AGE) {
+                decoded.getLastAge();
+            }
+            return decoded;
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(cursor, e);
+        }
+    }
+
+    private static String decodeValue(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (!value.startsWith(VALUE)) {
+            throw new IllegalArgumentException("Invalid cursor value: " + value);
+        }
+        return value.substring(VALUE.length());
+    }
+
+}
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 대량 적재용 회원 한 건 (팀은 이름으로 지정)
+ */
+@Data
+@NoArgsConstructor
+public class MemberLoadDto {
+
+    private String username;
+    private int age;
+    private String teamName;
+
+    public MemberLoadDto(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+
+}
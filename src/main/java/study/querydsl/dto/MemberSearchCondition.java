@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
 
@@ -11,6 +13,17 @@ public class MemberSearchCondition {
     private Integer ageGoe;
     private Integer ageLoe;
 
-
+    /**
+     * 캐시 키로 사용할 수 있도록 정규화한 사본
+     * 검색에서 무시되는 빈 문자열은 null 로, 문자열 앞뒤 공백은 제거한다.
+     */
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username.trim() : null);
+        normalized.setTeamName(hasText(teamName) ? teamName.trim() : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
 
 }
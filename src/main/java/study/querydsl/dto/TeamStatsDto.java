@@ -0,0 +1,26 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    private double ageAvg;
+    private Integer minAge;
+    private Integer maxAge;
+
+    @QueryProjection
+    public TeamStatsDto(String teamName, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.ageAvg = memberCount == 0 ? 0 : (double) ageSum / memberCount;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+}
@@ -5,13 +5,26 @@ import lombok.*;
 import javax.persistence.*;
 
 @Entity
+@NamedEntityGraph(name = Member.WITH_TEAM, attributeNodes = @NamedAttributeNode("team"))
+//MemberSearchCondition 검색 조건용 인덱스 (MemberSearchIndexVerifier 가 시작 시 확인)
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age"),
+        @Index(name = "idx_member_age", columnList = "age")
+})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username" , "age"})
 public class Member {
+
+    /** team 을 함께 조회하는 엔티티 그래프 (Querydsl4RepositorySupport.selectFrom(member, Member.WITH_TEAM)) */
+    public static final String WITH_TEAM = "Member.withTeam";
+
+    //pooled 시퀀스: 50 개씩 id 를 미리 할당 받아서 insert 마다 시퀀스를 조회하지 않고 JDBC 배치도 가능
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 50)
     @Column(name="member_id")
     private Long id;
     private String username;
@@ -2,12 +2,18 @@ package study.querydsl.entity;
 
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -15,11 +21,15 @@ import java.util.List;
 public class Team {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @SequenceGenerator(name = "team_seq", sequenceName = "team_seq", allocationSize = 50)
     @Column(name="team_id")
     private Long id;
     private String name;
 
+    //여러 팀의 members 를 지연 로딩할 때 팀마다 조회하지 않고 in 절로 묶어서 조회 (컬렉션 페치 조인의 카테시안 곱 대신)
+    //컬렉션 캐시는 member id 만 저장하므로 Member 가 캐시 대상이 아니면 회원마다 다시 조회한다 (캐시하지 않음)
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "team")
     private List<Member> members=new ArrayList<>();
 
@@ -0,0 +1,26 @@
+package study.querydsl.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * 팀별 회원 통계 (회원 수, 나이 합계/최소/최대)
+ * 회원 저장/삭제/팀 변경/나이 변경 시 TeamStatsMaintainer 가 갱신하고, 팀 통계 조회는 회원 전체 대신 이 테이블(팀 수 만큼)을 읽는다.
+ * 팀이 없는 회원은 포함되지 않는다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    private long memberCount;
+    private long ageSum;
+    private Integer minAge;
+    private Integer maxAge;
+
+}
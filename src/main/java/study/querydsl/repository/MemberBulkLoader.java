@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberLoadDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 대량 적재
+ *
+ * 팀은 이름별로 한 번만 조회(없으면 생성)해서 id 를 기억해 두고, 회원은 JDBC 배치 insert 로 저장한다.
+ * chunkSize 건마다 flush/clear 후 커밋하므로 적재 건수와 상관없이 영속성 컨텍스트 크기가 일정하다.
+ * id 는 pooled 시퀀스(allocationSize 50)에서 받는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberBulkLoader {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${member.bulk-load.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${member.bulk-load.jdbc-batch-size:100}")
+    private int jdbcBatchSize;
+
+    public long load(Stream<MemberLoadDto> rows) {
+        return load(rows, chunkSize);
+    }
+
+    /**
+     * 청크마다 별도 트랜잭션으로 커밋하므로 이미 진행 중인 트랜잭션 안에서는 호출할 수 없다
+     * (바깥 트랜잭션에 합류하면 청크가 따로 커밋되지 않고, 청크마다 clear 해서 호출한 쪽 엔티티까지 분리된다)
+     *
+     * @return 적재한 회원 수
+     */
+    public long load(Stream<MemberLoadDto> rows, int chunkSize) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Bulk load commits per chunk and must not run inside a transaction");
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Map<String, Long> teamIds = new HashMap<>();
+        Iterator<MemberLoadDto> iterator = rows.iterator();
+
+        long loaded = 0;
+        while (iterator.hasNext()) {
+            Long count = transactionTemplate.execute(status -> loadChunk(iterator, chunkSize, teamIds));
+            loaded += count;
+        }
+        return loaded;
+    }
+
+    private long loadChunk(Iterator<MemberLoadDto> iterator, int chunkSize, Map<String, Long> teamIds) {
+        em.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+
+        long count = 0;
+        while (count < chunkSize && iterator.hasNext()) {
+            MemberLoadDto row = iterator.next();
+            //연관관계 편의 메서드(team.getMembers().add)를 쓰지 않아 팀 프록시/컬렉션을 초기화하지 않는다
+            Member member = new Member(row.getUsername(), row.getAge());
+            member.setTeam(resolveTeam(row.getTeamName(), teamIds));
+            em.persist(member);
+            count++;
+        }
+
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    private Team resolveTeam(String teamName, Map<String, Long> teamIds) {
+        if (teamName == null) {
+            return null;
+        }
+        Long teamId = teamIds.get(teamName);
+        if (teamId != null) {
+            return em.getReference(Team.class, teamId);
+        }
+
+        teamId = queryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName))
+                .fetchFirst();
+        if (teamId != null) {
+            teamIds.put(teamName, teamId);
+            return em.getReference(Team.class, teamId);
+        }
+
+        Team newTeam = new Team(teamName);
+        em.persist(newTeam);
+        teamIds.put(teamName, newTeam.getId());
+        return newTeam;
+    }
+
+}
@@ -1,24 +1,36 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.annotations.QueryProjection;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QTeam;
+import study.querydsl.repository.support.PartitionedScanner;
+import study.querydsl.repository.support.QueryBudget;
+import study.querydsl.repository.support.ReadOnlyQuery;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
@@ -28,6 +40,8 @@ public class MemberJpaRepository{
 
     private final EntityManager em;
     private  final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryTemplate searchQueryTemplate;
+    private final PartitionedScanner partitionedScanner;
 
 //    public MemberJpaRepository (EntityManager em, JPAQueryFactory jpaQueryFactory){
 //        this.em=em;
@@ -54,6 +68,59 @@ public class MemberJpaRepository{
                 .fetch();
     }
 
+    /**
+     * 읽기 전용 조회 (조회한 엔티티를 변경해도 flush 되지 않는다)
+     */
+    public List<Member> findAll_QuerydslReadOnly(){
+        return ReadOnlyQuery.readOnly(queryFactory.selectFrom(member))
+                .fetch();
+    }
+
+    /**
+     * StatelessSession 으로 전체 회원을 한 건씩 consumer 에 넘긴다.
+     * 영속성 컨텍스트가 없어서 엔티티를 보관하지 않으므로 건수와 상관없이 힙 사용량이 일정하다.
+     * 현재 트랜잭션의 커넥션을 그대로 사용한다. 지연 로딩은 할 수 없다. (member.getTeam() 초기화 불가)
+     *
+     * @return consumer 에 넘긴 건수
+     */
+    @Transactional(readOnly = true)
+    public long forEachStateless(int fetchSize, Consumer<Member> consumer){
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            StatelessSession session = sessionFactory.openStatelessSession(connection);
+            try {
+                ScrollableResults results = new HibernateQuery<Void>(session)
+                        .select(member)
+                        .from(member)
+                        .setFetchSize(fetchSize)
+                        .scroll(ScrollMode.FORWARD_ONLY);
+                long count = 0;
+                try {
+                    while (results.next()) {
+                        consumer.accept((Member) results.get(0));
+                        count++;
+                    }
+                } finally {
+                    results.close();
+                }
+                return count;
+            } finally {
+                session.close();
+            }
+        });
+    }
+
+    /**
+     * 전체 회원을 member_id 범위로 나눠서 별도 커넥션에서 동시에 조회한다. (PartitionedScanner)
+     * 순서는 보장하지 않고, 조회한 회원은 분리된 상태이다. 반환된 Stream 은 try-with-resources 로 닫는다.
+     * 쓰기 트랜잭션 안에서는 호출할 수 없다.
+     */
+    public Stream<Member> streamPartitioned(int partitions){
+        return partitionedScanner.scan(queryFactory
+                .selectFrom(member)
+                .orderBy(member.id.asc()), member.id, partitions);
+    }
+
     public List<Member> findByUsername(String username){
         return em.createQuery("select m from Member m where m.username =:username", Member.class)
                 .setParameter("username", username)
@@ -67,27 +134,13 @@ public class MemberJpaRepository{
                 .fetch();
     }
 
+    /**
+     * BooleanBuilder 대신 조건 조합별로 미리 만들어 둔 Predicate 를 사용하고 값은 Param 으로 바인딩한다 (MemberSearchPredicates)
+     */
+    @QueryBudget(1)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
-        BooleanBuilder builder =new BooleanBuilder();
-
-        if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
-        }
-
-        if (hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
-        }
-
-        if(condition.getAgeGoe() !=null){
-            builder.and(member.age.goe(condition.getAgeGoe()));
-        }
-
-
-        if(condition.getAgeLoe() !=null){
-            builder.and(member.age.loe(condition.getAgeLoe()));
-        }
-
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -97,46 +150,42 @@ public class MemberJpaRepository{
                 ))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(builder)
+                .where(MemberSearchPredicates.allOf(condition));
+
+        return MemberSearchPredicates.bind(query, condition)
                 .fetch();
     }
 
 
+    @QueryBudget(1)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                )
+        return searchQueryTemplate.content(condition)
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ?  member.username.eq(username) :null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) :null;
-    }
-
-    private BooleanExpression ageGoeEq(Integer ageGoe) {
-        return ageGoe!=null? member.age.goe(ageGoe) : null;
+    /**
+     * 검색 결과를 List 로 모으지 않고 한 건씩 consumer 에 넘긴다.
+     * fetchSize 단위로 커서를 읽으므로 결과 건수와 상관없이 힙 사용량이 일정하다.
+     * (MySQL 은 fetchSize 에 Integer.MIN_VALUE 를 주거나 useCursorFetch=true 를 설정해야 실제로 스트리밍 된다)
+     *
+     * @return consumer 에 넘긴 건수
+     */
+    @QueryBudget(1)
+    @Transactional(readOnly = true)
+    public long searchForEach(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDto> consumer){
+        try (Stream<MemberTeamDto> stream = searchQueryTemplate.content(condition)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .stream()) {
+            long[] count = {0};
+            stream.forEach(dto -> {
+                consumer.accept(dto);
+                count[0]++;
+            });
+            return count[0];
+        }
     }
 
-    private BooleanExpression ageLoeEq(Integer ageLoe) {
-        return ageLoe!=null? member.age.loe(ageLoe) : null;
-    }
 
 
 
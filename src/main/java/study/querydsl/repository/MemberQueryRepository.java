@@ -1,60 +1,28 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.QueryBudget;
 
 import java.util.List;
 
-import static org.springframework.util.StringUtils.hasText;
-import static study.querydsl.entity.QMember.member;
-import static study.querydsl.entity.QTeam.team;
 
 @Repository
 @RequiredArgsConstructor
 public class MemberQueryRepository {
 
-    private  final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryTemplate searchQueryTemplate;
 
+    @QueryBudget(1)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                )
+        return searchQueryTemplate.content(condition)
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ?  member.username.eq(username) :null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) :null;
-    }
-
-    private BooleanExpression ageGoeEq(Integer ageGoe) {
-        return ageGoe!=null? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoeEq(Integer ageLoe) {
-        return ageLoe!=null? member.age.loe(ageLoe) : null;
-    }
 
 
 }
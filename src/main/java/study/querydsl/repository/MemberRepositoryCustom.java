@@ -2,10 +2,15 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface MemberRepositoryCustom {
 
@@ -14,5 +19,15 @@ public interface MemberRepositoryCustom {
 
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
 
+    CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy);
+
+    Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable);
+
+    CursorSlice<MemberTeamDto> searchByCursor(MemberSearchCondition condition, MemberCursor cursor, int size);
+
+    CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition);
+
+    CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable);
+
 
 }
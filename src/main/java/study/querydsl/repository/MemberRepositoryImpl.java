@@ -1,51 +1,66 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
-import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.AsyncQueryExecutor;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.PageCounter;
+import study.querydsl.repository.support.ParallelCountExecutor;
+import study.querydsl.repository.support.QueryBudget;
+import study.querydsl.repository.support.SingleFlightExecutor;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
-import static study.querydsl.entity.QTeam.team;
 
+//조회 전용 (레플리카가 설정되어 있으면 레플리카로 라우팅)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements  MemberRepositoryCustom{
 
-    private  final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em){
-       this.queryFactory=new JPAQueryFactory(em);
+    private final MemberSearchQueryTemplate searchQueryTemplate;
+    private final CountCache countCache;
+    private final PageCounter pageCounter;
+    private final ParallelCountExecutor parallelCountExecutor;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+    private final SingleFlightExecutor singleFlightExecutor;
+    //비동기 조회에서 프록시(@Transactional, @QueryBudget)를 거치도록 리포지토리를 통해 호출한다
+    private final MemberRepository self;
+
+    public MemberRepositoryImpl(EntityManager em, MemberSearchQueryTemplate searchQueryTemplate,
+                                CountCache countCache, ParallelCountExecutor parallelCountExecutor,
+                                AsyncQueryExecutor asyncQueryExecutor, SingleFlightExecutor singleFlightExecutor,
+                                @Lazy MemberRepository self){
+       this.searchQueryTemplate=searchQueryTemplate;
+       this.countCache=countCache;
+       this.pageCounter=new PageCounter(em);
+       this.parallelCountExecutor=parallelCountExecutor;
+       this.asyncQueryExecutor=asyncQueryExecutor;
+       this.singleFlightExecutor=singleFlightExecutor;
+       this.self=self;
     }
 
     @Override
+    @QueryBudget(1)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                )
+        return searchQueryTemplate.content(condition)
                 .fetch();
     }
 
@@ -53,23 +68,9 @@ public class MemberRepositoryImpl implements  MemberRepositoryCustom{
      * 단순한 페이징, fetchResults() 사용
      */
     @Override
+    @QueryBudget(2)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                )
+        QueryResults<MemberTeamDto> results = searchQueryTemplate.content(condition)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -85,37 +86,36 @@ public class MemberRepositoryImpl implements  MemberRepositoryCustom{
      * 데이터 조회 쿼리와, 전체 카운트 쿼리를 분리
      */
     @Override
+    @QueryBudget(2)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                )
+        return searchPageComplex(condition, pageable, CountStrategy.EXACT);
+    }
+
+    /**
+     * 전체 카운트 방법 선택 (EXACT, CAPPED, ESTIMATED)
+     * 조건이 넓어서 count 쿼리가 컨텐츠 쿼리보다 비쌀 때 CAPPED, ESTIMATED 사용
+     * 상한에 걸리지 않은 CAPPED (통계를 쓸 수 없어 CAPPED 로 대체된 ESTIMATED 포함)는
+     * 컨텐츠 + 상한 다음 행 확인 + count 로 3번 실행한다.
+     */
+    @Override
+    @QueryBudget(3)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy) {
+        //같은 조건 + 페이지 요청이 동시에 들어오면 한 번만 조회해서 결과를 함께 사용 (SingleFlightExecutor)
+        //트랜잭션을 여기서 시작하지 않아야 결과를 기다리는 호출이 커넥션을 잡지 않는다
+        return singleFlightExecutor.execute(List.of(condition.normalized(), pageable, countStrategy),
+                () -> loadPageComplex(condition, pageable, countStrategy));
+    }
+
+    private CountedPage<MemberTeamDto> loadPageComplex(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy) {
+        List<MemberTeamDto> content = searchQueryTemplate.content(condition)
                  //.orderBy(member.id.desc())
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .selectFrom(member)
-                //  .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoeEq(condition.getAgeGoe()),
-                        ageLoeEq(condition.getAgeLoe())
-                );
+        JPAQuery<Member> countQuery = searchQueryTemplate.count(condition);
         // .fetchCount();
 
         
@@ -127,26 +127,97 @@ public class MemberRepositoryImpl implements  MemberRepositoryCustom{
          * 마지막 페이지 일 때 (offset + 컨텐츠 사이즈를 더해서 전체 사이즈 구함)
          */
        // return PageableExecutionUtils.getPage(content,pageable , ()->countQuery.fetchCount() );
-        return PageableExecutionUtils.getPage(content,pageable , countQuery::fetchCount );
+        //같은 조건의 count 는 캐시에서 가져온다 (member, team 테이블 쓰기 시 무효화)
+        return pageCounter.getPage(content, pageable, countQuery, countStrategy,
+                () -> countCache.get(condition.normalized(), countQuery::fetchCount) );
         //return new PageImpl<>(content, pageable, total);
     }
 
+    /**
+     * 컨텐츠 쿼리와 count 쿼리를 별도 커넥션에서 동시에 실행 (페이지 지연시간 = 두 쿼리 중 긴 쪽)
+     * 쓰기 트랜잭션 안에서는 순차 실행
+     */
+    @Override
+    @QueryBudget(2)
+    public Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> contentQuery = searchQueryTemplate.content(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+
+        JPAQuery<Member> countQuery = searchQueryTemplate.count(condition);
+
+        return parallelCountExecutor.getPage(contentQuery, pageable, countQuery);
+    }
+
+    /**
+     * 키셋(seek) 페이징
+     * offset 으로 앞의 로우를 읽고 버리는 대신, 커서의 (정렬 키, member.id) 이후 로우만 where 조건으로 조회한다.
+     * 다음 페이지 존재 여부는 size + 1 건을 조회해서 판단한다.
+     */
+    @Override
+    @QueryBudget(1)
+    public CursorSlice<MemberTeamDto> searchByCursor(MemberSearchCondition condition, MemberCursor cursor, int size) {
+        List<MemberTeamDto> content = searchQueryTemplate.content(condition)
+                .where(afterCursor(cursor))
+                .orderBy(cursorOrder(cursor.getSortKey()))
+                .limit(size + 1)
+                .fetch();
 
+        if (content.size() <= size) {
+            return new CursorSlice<>(content, null);
+        }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ?  member.username.eq(username) :null;
+        content = content.subList(0, size);
+        MemberTeamDto last = content.get(size - 1);
+        return new CursorSlice<>(content, MemberCursor.after(cursor.getSortKey(), last).encode());
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) :null;
+    /**
+     * 전용 스레드 풀에서 읽기 전용 트랜잭션으로 실행 (호출 스레드에서는 트랜잭션/커넥션을 잡지 않는다)
+     * 풀과 대기열이 가득 차면 RejectedExecutionException 으로 실패한 future 를 반환한다.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition) {
+        return asyncQueryExecutor.submit(() -> self.search(condition));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.submit(() -> self.searchPageComplex(condition, pageable));
     }
 
-    private BooleanExpression ageGoeEq(Integer ageGoe) {
-        return ageGoe!=null? member.age.goe(ageGoe) : null;
+    private BooleanExpression afterCursor(MemberCursor cursor) {
+        if (cursor.isFirst()) {
+            return null;
+        }
+        switch (cursor.getSortKey()) {
+            case USERNAME:
+                //null 이 먼저 정렬되므로 마지막 값이 null 이면 남은 null 과 null 이 아닌 값 전체가 다음이다
+                if (cursor.getLastValue() == null) {
+                    return member.username.isNull().and(member.id.gt(cursor.getLastId()))
+                            .or(member.username.isNotNull());
+                }
+                return member.username.gt(cursor.getLastValue())
+                        .or(member.username.eq(cursor.getLastValue()).and(member.id.gt(cursor.getLastId())));
+            case AGE:
+                return member.age.gt(cursor.getLastAge())
+                        .or(member.age.eq(cursor.getLastAge()).and(member.id.gt(cursor.getLastId())));
+            default:
+                return member.id.gt(cursor.getLastId());
+        }
     }
 
-    private BooleanExpression ageLoeEq(Integer ageLoe) {
-        return ageLoe!=null? member.age.loe(ageLoe) : null;
+    private OrderSpecifier<?>[] cursorOrder(MemberCursor.SortKey sortKey) {
+        switch (sortKey) {
+            case USERNAME:
+                return new OrderSpecifier<?>[]{member.username.asc().nullsFirst(), member.id.asc()};
+            case AGE:
+                return new OrderSpecifier<?>[]{member.age.asc(), member.id.asc()};
+            default:
+                return new OrderSpecifier<?>[]{member.id.asc()};
+        }
     }
 
 
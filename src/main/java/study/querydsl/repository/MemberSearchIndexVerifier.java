@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 시작 시 MemberSearchQueryTemplate 의 16개 조건 조합마다 사용할 수 있는 인덱스가 있는지 DB 메타데이터로 확인하고,
+ * 없는 조합은 경고 로그를 남긴다. (조건이 없는 조합은 전체 조회이므로 제외)
+ *
+ * 조합이 인덱스로 커버된다는 기준
+ * - member 조건(username, age) 중 하나가 member 인덱스의 첫 번째 컬럼이거나
+ * - team.name 이 team 인덱스의 첫 번째 컬럼이고, member.team_id 가 member 인덱스의 첫 번째 컬럼 (team 부터 찾아서 조인)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.index-check.enabled", matchIfMissing = true)
+public class MemberSearchIndexVerifier {
+
+    private final DataSource dataSource;
+
+    public MemberSearchIndexVerifier(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        try {
+            for (String uncovered : uncoveredCombinations()) {
+                log.warn("회원 검색 조건 {} 에 사용할 인덱스가 없습니다 (전체 스캔)", uncovered);
+            }
+        } catch (SQLException e) {
+            log.warn("회원 검색 인덱스 확인 실패: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 인덱스로 커버되지 않는 조건 조합 (예: [member.age])
+     */
+    public List<List<String>> uncoveredCombinations() throws SQLException {
+        Set<String> leadingColumns = new HashSet<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            addLeadingColumns(metaData, "member", leadingColumns);
+            addLeadingColumns(metaData, "team", leadingColumns);
+        }
+
+        List<List<String>> uncovered = new ArrayList<>();
+        for (int mask = 1; mask < MemberSearchPredicates.COMBINATIONS; mask++) {
+            List<String> columns = MemberSearchPredicates.filterColumns(mask);
+            if (!isCovered(columns, leadingColumns)) {
+                uncovered.add(columns);
+            }
+        }
+        return uncovered;
+    }
+
+    private static boolean isCovered(List<String> columns, Set<String> leadingColumns) {
+        for (String column : columns) {
+            if (column.startsWith("member.") && leadingColumns.contains(column)) {
+                return true;
+            }
+        }
+        return columns.contains("team.name")
+                && leadingColumns.contains("team.name")
+                && leadingColumns.contains("member.team_id");
+    }
+
+    private static void addLeadingColumns(DatabaseMetaData metaData, String table, Set<String> leadingColumns) throws SQLException {
+        String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        try (ResultSet rs = metaData.getIndexInfo(null, null, tableName, false, true)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (column != null && rs.getShort("ORDINAL_POSITION") == 1) {
+                    leadingColumns.add(table + "." + column.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+}
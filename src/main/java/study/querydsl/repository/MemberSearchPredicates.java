@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.impl.JPAQuery;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색 조건 (usernameEq, teamNameEq, ageGoe, ageLoe 를 대신한다)
+ *
+ * 조건 필드 존재 여부 조합(최대 16개)마다 where 조건을 Param 으로 한 번만 만들어 두고 모든 호출에서 같은 객체를 사용한다.
+ * 조건 값은 bind 로 쿼리에 바인딩하므로 호출마다 BooleanExpression, BooleanBuilder 를 새로 만들지 않는다.
+ * 반환된 배열은 공유되므로 변경하면 안 된다.
+ * 팀 이름 조건(team.name)을 쓰려면 쿼리에 member.team 과 team 별칭으로 조인이 있어야 한다.
+ */
+public final class MemberSearchPredicates {
+
+    static final int USERNAME = 1;
+    static final int TEAM_NAME = 1 << 1;
+    static final int AGE_GOE = 1 << 2;
+    static final int AGE_LOE = 1 << 3;
+    static final int COMBINATIONS = 1 << 4;
+
+    private static final Param<String> usernameParam = new Param<>(String.class, "username");
+    private static final Param<String> teamNameParam = new Param<>(String.class, "teamName");
+    private static final Param<Integer> ageGoeParam = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> ageLoeParam = new Param<>(Integer.class, "ageLoe");
+
+    private static final Predicate[][] WHERE = new Predicate[COMBINATIONS][];
+    private static final Predicate[] ALL_OF = new Predicate[COMBINATIONS];
+
+    static {
+        for (int mask = 0; mask < COMBINATIONS; mask++) {
+            WHERE[mask] = createWhere(mask);
+            ALL_OF[mask] = ExpressionUtils.allOf(WHERE[mask]);
+        }
+    }
+
+    private MemberSearchPredicates() {
+    }
+
+    /**
+     * 조건이 있는 필드의 where 조건 (.where(...) 에 그대로 넘긴다)
+     */
+    public static Predicate[] where(MemberSearchCondition condition) {
+        return WHERE[mask(condition)];
+    }
+
+    /**
+     * 조건을 and 로 묶은 하나의 Predicate (조건이 없으면 null)
+     */
+    public static Predicate allOf(MemberSearchCondition condition) {
+        return ALL_OF[mask(condition)];
+    }
+
+    /**
+     * where/allOf 로 만든 쿼리에 조건 값을 바인딩
+     * 쿼리에 없는 Param 값은 사용되지 않는다.
+     */
+    public static <T> JPAQuery<T> bind(JPAQuery<T> query, MemberSearchCondition condition) {
+        if (hasText(condition.getUsername())) {
+            query.set(usernameParam, condition.getUsername());
+        }
+        if (hasText(condition.getTeamName())) {
+            query.set(teamNameParam, condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            query.set(ageGoeParam, condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            query.set(ageLoeParam, condition.getAgeLoe());
+        }
+        return query;
+    }
+
+    static Predicate[] where(int mask) {
+        return WHERE[mask];
+    }
+
+    /**
+     * 조합(mask)의 where 조건에 쓰이는 컬럼 (테이블.컬럼, MemberSearchIndexVerifier 에서 사용)
+     */
+    static List<String> filterColumns(int mask) {
+        List<String> columns = new ArrayList<>(4);
+        if ((mask & USERNAME) != 0) {
+            columns.add("member.username");
+        }
+        if ((mask & TEAM_NAME) != 0) {
+            columns.add("team.name");
+        }
+        if ((mask & (AGE_GOE | AGE_LOE)) != 0) {
+            columns.add("member.age");
+        }
+        return columns;
+    }
+
+    static int mask(MemberSearchCondition condition) {
+        int mask = 0;
+        if (hasText(condition.getUsername())) {
+            mask |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            mask |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            mask |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            mask |= AGE_LOE;
+        }
+        return mask;
+    }
+
+    private static Predicate[] createWhere(int mask) {
+        List<Predicate> where = new ArrayList<>(4);
+        if ((mask & USERNAME) != 0) {
+            where.add(member.username.eq(usernameParam));
+        }
+        if ((mask & TEAM_NAME) != 0) {
+            where.add(team.name.eq(teamNameParam));
+        }
+        if ((mask & AGE_GOE) != 0) {
+            where.add(member.age.goe(ageGoeParam));
+        }
+        if ((mask & AGE_LOE) != 0) {
+            where.add(member.age.loe(ageLoeParam));
+        }
+        return where.toArray(new Predicate[0]);
+    }
+
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색 쿼리 템플릿
+ *
+ * select(new QMemberTeamDto(...)).from(member).leftJoin(member.team, team) (팀 이름 조건이 있으면 join) 쿼리 모양을
+ * 조건 필드 존재 여부 조합(최대 16개)마다 한 번만 만들어 두고, 호출할 때는 복사해서 Param 값만 바인딩한다. (MemberSearchPredicates)
+ * 조건 값은 모두 Param 으로 바인딩되므로 같은 조합이면 JPQL 문자열이 항상 같아서 Hibernate 쿼리 플랜 캐시에서 HQL 파싱 결과를 재사용한다.
+ */
+@Component
+public class MemberSearchQueryTemplate {
+
+    private final EntityManager entityManager;
+    private final JPQLTemplates templates;
+    private final List<JPAQuery<MemberTeamDto>> contentQueries = new ArrayList<>(MemberSearchPredicates.COMBINATIONS);
+    private final List<JPAQuery<Member>> countQueries = new ArrayList<>(MemberSearchPredicates.COMBINATIONS);
+
+    public MemberSearchQueryTemplate(EntityManager entityManager, JPAQueryFactory queryFactory) {
+        this.entityManager = entityManager;
+        this.templates = JPAProvider.getTemplates(entityManager);
+
+        for (int mask = 0; mask < MemberSearchPredicates.COMBINATIONS; mask++) {
+            Predicate[] where = MemberSearchPredicates.where(mask);
+            JPAQuery<MemberTeamDto> contentQuery = queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")
+                    ))
+                    .from(member);
+            //팀 이름 조건이 있으면 어차피 팀 없는 회원은 걸러지므로 inner join
+            //(left join 은 member 를 먼저 읽어야 해서 idx_team_name 으로 team 부터 찾는 실행 계획을 쓸 수 없다)
+            if ((mask & MemberSearchPredicates.TEAM_NAME) != 0) {
+                contentQuery.join(member.team, team);
+            } else {
+                contentQuery.leftJoin(member.team, team);
+            }
+            contentQueries.add(contentQuery.where(where));
+
+            //팀 이름 조건이 있을 때만 team 조인 (member -> team 은 ManyToOne 이라 조인해도 개수는 같다)
+            JPAQuery<Member> countQuery = queryFactory.selectFrom(member);
+            if ((mask & MemberSearchPredicates.TEAM_NAME) != 0) {
+                countQuery.join(member.team, team);
+            }
+            countQueries.add(countQuery.where(where));
+        }
+    }
+
+    /**
+     * 조건이 바인딩된 검색 쿼리 (offset, limit, orderBy, where 를 더 붙여도 템플릿에는 영향 없음)
+     */
+    public JPAQuery<MemberTeamDto> content(MemberSearchCondition condition) {
+        JPAQuery<MemberTeamDto> template = contentQueries.get(MemberSearchPredicates.mask(condition));
+        return MemberSearchPredicates.bind(template.clone(entityManager, templates), condition);
+    }
+
+    /**
+     * 조건이 바인딩된 count 용 쿼리
+     */
+    public JPAQuery<Member> count(MemberSearchCondition condition) {
+        JPAQuery<Member> template = countQueries.get(MemberSearchPredicates.mask(condition));
+        return MemberSearchPredicates.bind(template.clone(entityManager, templates), condition);
+    }
+
+}
@@ -1,29 +1,35 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.Tuple;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.support.QueryBudget;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
-//@Repository
+@Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
 
-    public MemberTestRepository(Class<?> domainClass) {
-        super(domainClass);
+    public MemberTestRepository() {
+        super(Member.class);
     }
 
     public List<Member> basicSelect(){
@@ -32,53 +38,134 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 .fetch();
     }
 
+    /**
+     * basicSelect 를 MemberDto 프로젝션으로 캐시에서 조회 (member 테이블에 쓰기가 있기 전까지 다시 조회하지 않는다)
+     * 엔티티는 캐시할 수 없으므로 필요한 값만 DTO 로 조회한다.
+     */
+    public List<MemberDto> basicSelectCached(){
+        return fetchCached(select(new QMemberDto(member.username, member.age))
+                .from(member));
+    }
+
+    /**
+     * 팀별 평균 나이 (집계 쿼리 결과 캐시, member/team 테이블 쓰기 시 무효화)
+     */
+    public List<Tuple> averageAgeByTeam(){
+        return fetchCached(select(team.name, member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc()));
+    }
+
     public List<Member> basicSelectFrom(){
         return selectFrom(member).fetch();
     }
 
+    public List<Member> basicSelectFromReadOnly(){
+        return selectFromReadOnly(member).fetch();
+    }
+
+    /**
+     * 조건에 맞는 회원을 id 순으로 chunkSize 건씩 consumer 에 넘긴다 (처리한 회원은 영속성 컨텍스트에서 분리)
+     */
+    @Transactional(readOnly = true)
+    public long forEachChunk(MemberSearchCondition condition, int chunkSize, Consumer<List<Member>> consumer){
+        return streamAll(memberChunkQuery(condition), chunkSize, consumer);
+    }
+
+    /**
+     * forEachChunk 의 병렬 버전 (worker 는 ChunkWorkerPool 에서 실행, sink 는 호출한 스레드)
+     */
+    @Transactional(readOnly = true)
+    public <R> long forEachChunkParallel(MemberSearchCondition condition, int chunkSize, boolean ordered,
+                                         Function<List<Member>, R> worker, Consumer<R> sink){
+        return streamAll(memberChunkQuery(condition), chunkSize, ordered, worker, sink);
+    }
+
+    private JPAQuery<Member> memberChunkQuery(MemberSearchCondition condition) {
+        JPAQuery<Member> query = selectFrom(member);
+        if (hasText(condition.getTeamName())) {
+            //조건용 조인 (페치 조인이 아니므로 행 단위 커서와 맞다)
+            query.join(member.team, team);
+        }
+        return MemberSearchPredicates.bind(query
+                .where(MemberSearchPredicates.where(condition))
+                .orderBy(member.id.asc()), condition);
+    }
+
+    /**
+     * team 을 엔티티 그래프로 함께 조회 (조인을 직접 쓰지 않아도 member.getTeam() 에서 추가 쿼리 없음)
+     * 팀 이름 조건이 있을 때만 조건용으로 team 을 조인한다.
+     */
+    @QueryBudget(1)
+    public List<Member> searchWithTeam(MemberSearchCondition condition){
+        JPAQuery<Member> query = selectFrom(member, Member.WITH_TEAM);
+        if (hasText(condition.getTeamName())) {
+            query.join(member.team, team);
+        }
+        return MemberSearchPredicates.bind(query.where(MemberSearchPredicates.where(condition)), condition)
+                .fetch();
+    }
+
+    @QueryBudget(2)
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable){
-        JPAQuery<Member> query = selectFrom(member)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        JPAQuery<Member> query = MemberSearchPredicates.bind(selectFrom(member)
+                .where(MemberSearchPredicates.where(condition)), condition);
 
         List<Member> content = getQuerydsl().applyPagination(pageable, query).fetch();
         return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
     }
 
+    /**
+     * 2단계 페이징: 조건과 정렬로 회원 id 만 먼저 페이징 하고, 그 id 의 MemberTeamDto 만 team 과 조인해서 조회
+     * (팀 이름 조건이 있을 때만 1단계에서 team 조인)
+     */
+    @QueryBudget(3)
+    public Page<MemberTeamDto> searchPageByIds(MemberSearchCondition condition, Pageable pageable){
+        return applyPaginationByIds(pageable, query -> {
+                    JPAQuery<Long> ids = query.select(member.id).from(member);
+                    if (hasText(condition.getTeamName())) {
+                        ids.join(member.team, team);
+                    }
+                    return MemberSearchPredicates.bind(ids.where(MemberSearchPredicates.where(condition)), condition);
+                }, (query, ids) -> query
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")
+                        ))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.id.in(ids)),
+                MemberTeamDto::getMemberId);
+    }
+
     /** searchPageByApplyPage 메서드와 applyPagination 는 반환 값은 동일하다  */
 
+    @QueryBudget(2)
     public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable){
-        return applyPagination(pageable, query->query
+        return applyPagination(pageable, query->MemberSearchPredicates.bind(query
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                ));
+                .where(MemberSearchPredicates.where(condition)), condition));
     }
 
 
 
     /** applyPagination2 메서드와 MemberRepositoryImpl 클래스의 searchPageComplex 는 반환 값은 동일하다  */
+    @QueryBudget(2)
     public Page<Member> applyPagination2(MemberSearchCondition condition, Pageable pageable){
-        return applyPagination(pageable, contentQuery->contentQuery
+        return applyPagination(pageable, contentQuery->MemberSearchPredicates.bind(contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                ), countQuery -> countQuery
+                .where(MemberSearchPredicates.where(condition)), condition
+                ), countQuery -> MemberSearchPredicates.bind(countQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(MemberSearchPredicates.where(condition)), condition)
         );
     }
 
@@ -143,21 +230,6 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 
 
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ?  member.username.eq(username) :null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) :null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe!=null? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe!=null? member.age.loe(ageLoe) : null;
-    }
 
 
 
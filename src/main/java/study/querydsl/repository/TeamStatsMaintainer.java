@@ -0,0 +1,359 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Null;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+import study.querydsl.repository.support.BulkWriteListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TeamStats(팀별 회원 수, 나이 합계/최소/최대) 증분 갱신
+ *
+ * 회원 insert/delete/update(팀 변경, 나이 변경) 엔티티 이벤트에서 팀별 변화량(회원 수, 나이 합계)을 세션마다 모아 두고,
+ * 커밋 직전(flush 이후)에 팀마다 update 한 번으로 반영한다. 최소/최대 나이는 idx_member_team_age 인덱스로 다시 구한다.
+ * 벌크 update/delete(TimedJPAQueryFactory) 는 엔티티 이벤트가 없으므로 실행 전에 같은 where 로 팀별 건수와 나이 합계(update 후 나이 포함)를
+ * 한 번 집계해서 같은 변화량에 더한다. 대상 행만 읽고 잠금도 커밋 직전 update 뿐이라 ChunkedBulkExecutor 의 청크마다 팀 전체를 다시 계산하지 않는다.
+ * 벌크 update 로 팀을 상수가 아닌 식으로 바꾸면 바뀐 팀을 알 수 없으므로 전체를 다시 계산한다.
+ * 그 밖의 경로(네이티브 SQL, 다른 애플리케이션)로 바뀐 값은 TeamStatsRepairJob 이 주기적으로 바로잡는다.
+ *
+ * 통계 행은 팀을 저장하는 트랜잭션에서 만들고 팀을 삭제하면 지운다. 회원 변경은 항상 이미 있는 행을 update 하므로
+ * 같은 팀에 동시에 회원이 추가되어도 행 잠금으로 순서대로 반영된다. (행을 동시에 insert 하다 PK 충돌이 나지 않는다)
+ * 다시 계산할 때는 대상 행을 먼저 잠가서(select ... for update) 진행 중인 변화량 반영이 커밋된 뒤의 member 를 읽는다.
+ */
+@Slf4j
+@Component
+public class TeamStatsMaintainer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        BulkWriteListener {
+
+    private static final String APPLY_DELTA =
+            "update team_stats set member_count = member_count + :count, age_sum = age_sum + :ageSum," +
+            " min_age = (select min(m.age) from member m where m.team_id = :teamId)," +
+            " max_age = (select max(m.age) from member m where m.team_id = :teamId)" +
+            " where team_id = :teamId";
+    private static final String INSERT_FOR_TEAM =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)" +
+            " select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)" +
+            " from team t left join member m on m.team_id = t.team_id where t.team_id = :teamId group by t.team_id";
+    private static final String INSERT_MISSING =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)" +
+            " select t.team_id, 0, 0, null, null from team t" +
+            " where not exists (select 1 from team_stats s where s.team_id = t.team_id)";
+    private static final String LOCK_ROWS = "select s.team_id from team_stats s";
+    private static final String RECOMPUTE =
+            "update team_stats s set" +
+            " member_count = (select count(*) from member m where m.team_id = s.team_id)," +
+            " age_sum = (select coalesce(sum(m.age), 0) from member m where m.team_id = s.team_id)," +
+            " min_age = (select min(m.age) from member m where m.team_id = s.team_id)," +
+            " max_age = (select max(m.age) from member m where m.team_id = s.team_id)";
+    private static final String DELETE_ORPHANS =
+            "delete from team_stats where team_id not in (select t.team_id from team t)";
+
+    private final EntityManager em;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<SharedSessionContractImplementor, Map<Long, Delta>> pending = new ConcurrentHashMap<>();
+
+    public TeamStatsMaintainer(EntityManager em, EntityManagerFactory entityManagerFactory) {
+        this.em = em;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Team) {
+            delta(event.getSession(), (Long) event.getId()).created = true;
+        }
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            delta(event.getSession(), teamId(persister, event.getState())).add(age(persister, event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Team) {
+            delta(event.getSession(), (Long) event.getId()).deleted = true;
+        }
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            delta(event.getSession(), teamId(persister, event.getDeletedState())).remove(age(persister, event.getDeletedState()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Long teamId = teamId(persister, event.getState());
+        if (event.getOldState() == null) {
+            //이전 값을 모르면(준영속 엔티티 update) 현재 팀만 다시 계산하고 이전 팀은 복구 작업에 맡긴다
+            delta(event.getSession(), teamId).recompute = true;
+            return;
+        }
+        Long oldTeamId = teamId(persister, event.getOldState());
+        int age = age(persister, event.getState());
+        int oldAge = age(persister, event.getOldState());
+        if (!Objects.equals(teamId, oldTeamId) || age != oldAge) {
+            delta(event.getSession(), oldTeamId).remove(oldAge);
+            delta(event.getSession(), teamId).add(age);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public Runnable beforeExecute(EntityPath<?> entity, Predicate where, Map<Path<?>, Expression<?>> updates) {
+        if (Team.class.equals(entity.getType())) {
+            return updates.isEmpty() ? this::deleteOrphans : null;
+        }
+        if (!Member.class.equals(entity.getType())) {
+            return null;
+        }
+        boolean delete = updates.isEmpty();
+        Expression<?> newTeam = updated(updates, "team");
+        Expression<?> newAge = updated(updates, "age");
+        if (!delete && newTeam == null && newAge == null) {
+            return null;
+        }
+        if (newTeam != null && !(newTeam instanceof Constant)) {
+            return this::rebuildInCurrentTransaction;
+        }
+        //setNull 도 Constant (Null.CONSTANT) 이므로 먼저 거른다
+        Long newTeamId = newTeam != null && newTeam != Null.CONSTANT
+                ? ((Team) ((Constant<?>) newTeam).getConstant()).getId() : null;
+        List<Tuple> rows = bulkRows(entity, where, newAge);
+        return () -> {
+            EventSource session = em.unwrap(EventSource.class);
+            for (Tuple row : rows) {
+                Long oldTeamId = row.get(0, Long.class);
+                long count = row.get(1, Number.class).longValue();
+                long ageSum = row.get(2, Number.class).longValue();
+                long newAgeSum = newAge == null ? ageSum
+                        : newAge instanceof Constant ? count * ((Number) ((Constant<?>) newAge).getConstant()).longValue()
+                        : row.get(3, Number.class).longValue();
+                delta(session, oldTeamId).add(-count, -ageSum);
+                if (!delete) {
+                    delta(session, newTeam != null ? newTeamId : oldTeamId).add(count, newAgeSum);
+                }
+            }
+        };
+    }
+
+    /**
+     * 전체 다시 계산 (팀 행을 잠가서 동시에 실행되는 rebuild 는 순서대로 실행된다)
+     * @return 통계 행 수 (팀 수)
+     */
+    @Transactional
+    public int rebuild() {
+        return rebuildInCurrentTransaction();
+    }
+
+    /**
+     * 벌크 연산 직후 같은 트랜잭션에서 호출된다. (BulkWriteListener)
+     */
+    private int rebuildInCurrentTransaction() {
+        Session session = em.unwrap(Session.class);
+        session.flush();
+        pending.remove(session);
+        session.createNativeQuery("select t.team_id from team t order by t.team_id for update")
+                .addSynchronizedEntityClass(Team.class)
+                .getResultList();
+        nativeUpdate(session, DELETE_ORPHANS).executeUpdate();
+        nativeUpdate(session, INSERT_MISSING).executeUpdate();
+        lockRows(session, null);
+        return nativeUpdate(session, RECOMPUTE).executeUpdate();
+    }
+
+    private void deleteOrphans() {
+        nativeUpdate(em.unwrap(Session.class), DELETE_ORPHANS).executeUpdate();
+    }
+
+    /**
+     * 벌크 연산 대상 행의 (이전 팀 id, 건수, 나이 합계, update 후 나이 합계) 를 이전 팀별로 집계 (팀이 없던 행은 팀 id 가 null)
+     * update 후 나이가 상수이면 건수로 계산하므로 네 번째 값은 나이를 식으로 바꿀 때만 구한다.
+     */
+    private List<Tuple> bulkRows(EntityPath<?> entity, Predicate where, Expression<?> newAge) {
+        NumberPath<Long> teamId = Expressions.numberPath(Long.class, Expressions.path(Team.class, entity, "team"), "id");
+        NumberPath<Integer> age = Expressions.numberPath(Integer.class, entity, "age");
+        NumberExpression<Integer> newAgeSum = newAge != null && !(newAge instanceof Constant)
+                ? Expressions.numberTemplate(Integer.class, "{0}", newAge).sum()
+                : age.sum();
+        return new JPAQueryFactory(em)
+                .select(teamId, age.count(), age.sum(), newAgeSum)
+                .from(entity)
+                .where(where)
+                .groupBy(teamId)
+                .fetch();
+    }
+
+    private static Expression<?> updated(Map<Path<?>, Expression<?>> updates, String property) {
+        for (Map.Entry<Path<?>, Expression<?>> entry : updates.entrySet()) {
+            if (property.equals(entry.getKey().getMetadata().getName())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Delta delta(EventSource session, Long teamId) {
+        Map<Long, Delta> deltas = pending.get(session);
+        if (deltas == null) {
+            deltas = new HashMap<>();
+            pending.put(session, deltas);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::applyPending);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> pending.remove(s));
+        }
+        //팀이 없는 회원은 집계하지 않으므로 버리는 Delta 를 돌려준다
+        return teamId != null ? deltas.computeIfAbsent(teamId, id -> new Delta()) : new Delta();
+    }
+
+    /**
+     * 커밋 직전(flush 이후) 호출. 새 팀은 통계 행 insert, 삭제된 팀은 delete, 나머지는 팀마다 update 한 번
+     */
+    private void applyPending(SharedSessionContractImplementor session) {
+        Map<Long, Delta> deltas = pending.remove(session);
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+        Session hibernateSession = (Session) session;
+        for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+            Long teamId = entry.getKey();
+            Delta delta = entry.getValue();
+            if (delta.deleted) {
+                nativeUpdate(hibernateSession, "delete from team_stats where team_id = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+            } else if (delta.created) {
+                //커밋 전이라 다른 트랜잭션은 이 팀을 볼 수 없으므로 insert 가 겹치지 않는다
+                nativeUpdate(hibernateSession, INSERT_FOR_TEAM)
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+            } else if (delta.recompute) {
+                recompute(hibernateSession, List.of(teamId));
+            } else {
+                int updated = nativeUpdate(hibernateSession, APPLY_DELTA)
+                        .setParameter("count", delta.count)
+                        .setParameter("ageSum", delta.ageSum)
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+                if (updated == 0) {
+                    log.warn("팀 {} 통계 행이 없습니다. TeamStatsRepairJob 에서 다시 계산합니다.", teamId);
+                }
+            }
+        }
+        log.debug("팀 통계 갱신: {} 팀", deltas.size());
+    }
+
+    private void recompute(Session session, Collection<Long> teamIds) {
+        lockRows(session, teamIds);
+        nativeUpdate(session, RECOMPUTE + " where s.team_id in (:teamIds)")
+                .setParameterList("teamIds", teamIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 통계 행 잠금 (teamIds 가 null 이면 전체). 잠금을 기다린 뒤 실행하는 다음 문장은 그 사이 커밋된 회원 변경을 본다.
+     */
+    private void lockRows(Session session, Collection<Long> teamIds) {
+        NativeQuery<?> query = session.createNativeQuery(LOCK_ROWS
+                + (teamIds != null ? " where s.team_id in (:teamIds)" : "")
+                + " order by s.team_id for update");
+        query.addSynchronizedEntityClass(TeamStats.class);
+        if (teamIds != null) {
+            query.setParameterList("teamIds", teamIds);
+        }
+        query.getResultList();
+    }
+
+    private NativeQuery<?> nativeUpdate(Session session, String sql) {
+        NativeQuery<?> query = session.createNativeQuery(sql);
+        //team_stats 만 변경하므로 2차 캐시(team 리전)를 비우지 않도록 대상을 지정
+        query.addSynchronizedEntityClass(TeamStats.class);
+        return query;
+    }
+
+    private static Long teamId(EntityPersister persister, Object[] state) {
+        Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        return team != null ? team.getId() : null;
+    }
+
+    private static int age(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+    private static class Delta {
+        private long count;
+        private long ageSum;
+        private boolean recompute;
+        private boolean created;
+        private boolean deleted;
+
+        private void add(int age) {
+            count++;
+            ageSum += age;
+        }
+
+        private void add(long count, long ageSum) {
+            this.count += count;
+            this.ageSum += ageSum;
+        }
+
+        private void remove(int age) {
+            count--;
+            ageSum -= age;
+        }
+    }
+
+}
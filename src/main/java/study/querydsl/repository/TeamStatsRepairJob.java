@@ -0,0 +1,41 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * TeamStats 를 member 테이블에서 전체 다시 계산한다.
+ * 증분 갱신이 보지 못한 변경(네이티브 SQL, 다른 애플리케이션, 리스너 등록 전에 저장된 회원)을 바로잡는다.
+ */
+@Slf4j
+@Component
+public class TeamStatsRepairJob {
+
+    private final TeamStatsMaintainer teamStatsMaintainer;
+    private final boolean rebuildOnStartup;
+
+    public TeamStatsRepairJob(TeamStatsMaintainer teamStatsMaintainer,
+                              @Value("${member.team-stats.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.teamStatsMaintainer = teamStatsMaintainer;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            repair();
+        }
+    }
+
+    @Scheduled(cron = "${member.team-stats.repair-cron:0 0 4 * * *}")
+    public void repair() {
+        long start = System.nanoTime();
+        int teams = teamStatsMaintainer.rebuild();
+        log.info("팀 통계 다시 계산: {} 팀, {} ms", teams, (System.nanoTime() - start) / 1_000_000);
+    }
+
+}
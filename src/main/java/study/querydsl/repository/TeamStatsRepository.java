@@ -0,0 +1,68 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * 팀 통계 조회 (회원 전체 group by 대신 팀 수 만큼의 TeamStats 행을 읽는다)
+ * 팀이 없는 회원은 포함되지 않는다.
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class TeamStatsRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    /**
+     * 팀별 회원 수, 나이 합계/평균/최소/최대 (팀 이름순)
+     */
+    public List<TeamStatsDto> findAll() {
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.name,
+                        teamStats.memberCount,
+                        teamStats.ageSum,
+                        teamStats.minAge,
+                        teamStats.maxAge))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .where(teamStats.memberCount.gt(0))
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    /**
+     * 팀에 소속된 전체 회원의 수, 나이 합계/평균/최소/최대
+     * 삭제된 팀의 행이 남아 있어도(다른 경로로 삭제) 합계에 들어가지 않도록 team 과 조인한다.
+     */
+    public TeamStatsDto totals() {
+        Tuple tuple = queryFactory
+                .select(teamStats.memberCount.sum(),
+                        teamStats.ageSum.sum(),
+                        teamStats.minAge.min(),
+                        teamStats.maxAge.max())
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .fetchOne();
+
+        Long memberCount = tuple.get(teamStats.memberCount.sum());
+        Long ageSum = tuple.get(teamStats.ageSum.sum());
+        return new TeamStatsDto(null,
+                memberCount != null ? memberCount : 0,
+                ageSum != null ? ageSum : 0,
+                tuple.get(teamStats.minAge.min()),
+                tuple.get(teamStats.maxAge.max()));
+    }
+
+}
@@ -0,0 +1,83 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 조회 쿼리를 전용 스레드 풀에서 읽기 전용 트랜잭션으로 실행하고 CompletableFuture 로 돌려준다.
+ * 요청 스레드(Tomcat)는 JDBC 응답을 기다리지 않고 반환된다.
+ *
+ * 동시에 실행되는 쿼리 수는 pool-size 로 제한하고(커넥션 풀 크기 이하로 설정), 대기열(queue-capacity)까지 차면
+ * 더 쌓지 않고 RejectedExecutionException 으로 실패한 future 를 반환한다. (컨트롤러에서 503)
+ */
+@Component
+public class AsyncQueryExecutor implements DisposableBean, MeterBinder {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public AsyncQueryExecutor(PlatformTransactionManager transactionManager, int poolSize, int queueCapacity) {
+        this(transactionManager, poolSize, queueCapacity, QueryThreadFactory.PLATFORM);
+    }
+
+    @Autowired
+    public AsyncQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${member.async-query.pool-size:8}") int poolSize,
+                              @Value("${member.async-query.queue-capacity:100}") int queueCapacity,
+                              ObjectProvider<QueryThreadFactory> threadFactory) {
+        this(transactionManager, poolSize, queueCapacity, threadFactory.getIfAvailable(() -> QueryThreadFactory.PLATFORM));
+    }
+
+    private AsyncQueryExecutor(PlatformTransactionManager transactionManager, int poolSize, int queueCapacity,
+                               QueryThreadFactory threadFactory) {
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory.create("async-query-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        try {
+            return CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("member.async-query.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+        Gauge.builder("member.async-query.queued", executor, e -> e.getQueue().size())
+                .register(registry);
+        FunctionCounter.builder("member.async-query.rejected", rejectedCount, AtomicLong::get)
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,38 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TimedJPAQueryFactory 로 만든 벌크 update/delete 의 실행 전후에 호출된다.
+ * 벌크 연산은 엔티티 이벤트가 발생하지 않으므로, 엔티티 변경에 맞춰 갱신하는 데이터는 여기서 처리한다. (TeamStatsMaintainer)
+ */
+public interface BulkWriteListener {
+
+    /**
+     * 실행 직전에 호출한다. 반환한 Runnable 은 실행 직후 같은 트랜잭션에서 호출한다. (할 일이 없으면 null)
+     *
+     * @param where   where 조건 (없으면 null)
+     * @param updates update 의 set 대상 경로와 값 (상수는 ConstantImpl, setNull 은 Null.CONSTANT, delete 는 빈 Map)
+     */
+    Runnable beforeExecute(EntityPath<?> entity, Predicate where, Map<Path<?>, Expression<?>> updates);
+
+    static Runnable beforeExecute(List<BulkWriteListener> listeners, EntityPath<?> entity,
+                                  Predicate where, Map<Path<?>, Expression<?>> updates) {
+        List<Runnable> afterExecute = new ArrayList<>();
+        for (BulkWriteListener listener : listeners) {
+            Runnable callback = listener.beforeExecute(entity, where, updates);
+            if (callback != null) {
+                afterExecute.add(callback);
+            }
+        }
+        return () -> afterExecute.forEach(Runnable::run);
+    }
+
+}
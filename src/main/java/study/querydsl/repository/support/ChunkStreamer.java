@@ -0,0 +1,180 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 쿼리 결과를 forward-only 커서(JPAQuery.iterate, Hibernate ScrollableResults)로 읽어서 chunkSize 건씩 처리한다.
+ * fetch size 를 chunkSize 로 지정하고, 처리가 끝난 청크의 엔티티는 영속성 컨텍스트에서 분리(evict)하므로
+ * 전체 건수와 상관없이 힙 사용량이 청크 크기 정도로 일정하다.
+ *
+ * - 커서를 여는 동안 커넥션이 필요하므로 트랜잭션 안에서 호출한다
+ * - 쓰기 트랜잭션에서는 분리하기 전에 flush 해서 consumer 에서 변경한 내용을 반영한다
+ * - 컬렉션 페치 조인은 행 단위로 읽는 커서와 맞지 않으므로 사용하지 않는다
+ * - MySQL 에서 행 단위로 스트리밍하려면 fetch size 가 Integer.MIN_VALUE 이거나 useCursorFetch=true 여야 한다
+ */
+public class ChunkStreamer {
+
+    private final EntityManager entityManager;
+
+    public ChunkStreamer(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * 호출한 스레드에서 청크마다 consumer 실행
+     * @return 처리한 건수
+     */
+    public <T> long stream(JPAQuery<T> query, int chunkSize, Consumer<List<T>> consumer) {
+        return read(query, chunkSize, chunk -> {
+            consumer.accept(chunk);
+            detach(chunk);
+        });
+    }
+
+    /**
+     * 청크를 읽는 것은 호출한 스레드, worker 는 풀(workers)에서 동시에 실행하고 결과를 sink 에 넘긴다.
+     * 청크는 worker 에 넘기기 전에 분리되므로 worker 에서 지연 로딩은 할 수 없다. (필요한 연관관계는 페치 조인)
+     * 동시에 처리 중인 청크는 maxInFlight 개까지만 두고, 넘으면 가장 먼저(ordered) 또는 먼저 끝난(unordered) 결과를 기다린다.
+     * sink 는 항상 호출한 스레드에서 실행되므로 동기화가 필요 없다.
+     *
+     * @param ordered true 면 청크 순서대로, false 면 worker 가 끝난 순서대로 sink 에 넘긴다
+     * @return 처리한 건수
+     */
+    public <T, R> long stream(JPAQuery<T> query, int chunkSize, ExecutorService workers, int maxInFlight,
+                              boolean ordered, Function<List<T>, R> worker, Consumer<R> sink) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        CompletionService<R> completionService = new ExecutorCompletionService<>(workers);
+        Deque<Future<R>> inFlight = new ArrayDeque<>();
+        try {
+            long count = read(query, chunkSize, chunk -> {
+                detach(chunk);
+                Callable<R> task = () -> worker.apply(chunk);
+                //순서대로 기다릴 때는 완료 큐에 쌓이지 않도록 풀에 바로 넣는다
+                inFlight.addLast(ordered ? workers.submit(task) : completionService.submit(task));
+                if (inFlight.size() >= maxInFlight) {
+                    sink.accept(await(next(inFlight, completionService, ordered)));
+                }
+            });
+            while (!inFlight.isEmpty()) {
+                sink.accept(await(next(inFlight, completionService, ordered)));
+            }
+            return count;
+        } catch (RuntimeException e) {
+            for (Future<R> future : inFlight) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private <T> long read(JPAQuery<T> query, int chunkSize, Consumer<List<T>> chunkHandler) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        long count = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        try (CloseableIterator<T> iterator = query.setHint(QueryHints.HINT_FETCH_SIZE, chunkSize).iterate()) {
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                count++;
+                if (chunk.size() == chunkSize) {
+                    chunkHandler.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkHandler.accept(chunk);
+            }
+        }
+        return count;
+    }
+
+    private void detach(List<?> chunk) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            entityManager.flush();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        for (Object row : chunk) {
+            if (row instanceof Tuple) {
+                for (Object value : ((Tuple) row).toArray()) {
+                    evict(session, value);
+                }
+            } else if (row instanceof Object[]) {
+                for (Object value : (Object[]) row) {
+                    evict(session, value);
+                }
+            } else {
+                evict(session, row);
+            }
+        }
+    }
+
+    private static void evict(Session session, Object value) {
+        //DTO, 스칼라 값은 엔티티가 아니므로 건너뛴다 (Session.contains 는 엔티티가 아니면 예외)
+        if (value == null) {
+            return;
+        }
+        Class<?> type = value instanceof HibernateProxy
+                ? ((HibernateProxy) value).getHibernateLazyInitializer().getPersistentClass()
+                : value.getClass();
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) session.getSessionFactory();
+        if (sessionFactory.getMetamodel().entityPersisters().containsKey(type.getName()) && session.contains(value)) {
+            session.evict(value);
+        }
+    }
+
+    private static <R> Future<R> next(Deque<Future<R>> inFlight, CompletionService<R> completionService,
+                                      boolean ordered) {
+        if (ordered) {
+            return inFlight.removeFirst();
+        }
+        Future<R> done;
+        try {
+            done = completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chunk worker", e);
+        }
+        inFlight.remove(done);
+        return done;
+    }
+
+    private static <R> R await(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chunk worker", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Chunk worker failed", e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package study.querydsl.repository.support;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Querydsl4RepositorySupport.streamAll 의 청크 worker 스레드 풀
+ * worker 는 분리된 엔티티만 다루고 DB 를 조회하지 않으므로 커넥션 풀 크기와 상관없이 CPU 코어 수에 맞춘다.
+ * 대기열은 ChunkStreamer 가 동시에 처리 중인 청크 수(pool-size * 2)로 제한하므로 따로 제한하지 않는다.
+ */
+@Component
+public class ChunkWorkerPool implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final int poolSize;
+
+    public ChunkWorkerPool(@Value("${member.chunk-worker.pool-size:4}") int poolSize) {
+        this.poolSize = poolSize;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("chunk-worker-"));
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 동시에 처리 중인 청크 수 제한 (worker 가 쉬지 않도록 풀 크기의 두 배)
+     */
+    public int getMaxInFlight() {
+        return poolSize * 2;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
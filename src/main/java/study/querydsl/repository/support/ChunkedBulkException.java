@@ -0,0 +1,19 @@
+package study.querydsl.repository.support;
+
+/**
+ * 청크 실행 중 실패. getProgress() 는 마지막으로 커밋된 청크까지의 진행 상황이다.
+ */
+public class ChunkedBulkException extends RuntimeException {
+
+    private final ChunkedBulkProgress progress;
+
+    public ChunkedBulkException(ChunkedBulkProgress progress, Throwable cause) {
+        super("Chunked bulk execution failed after id " + progress.getLastCompletedId(), cause);
+        this.progress = progress;
+    }
+
+    public ChunkedBulkProgress getProgress() {
+        return progress;
+    }
+
+}
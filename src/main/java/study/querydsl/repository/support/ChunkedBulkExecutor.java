@@ -0,0 +1,102 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * id 범위를 chunkSize 단위로 나눠서 벌크 update/delete 를 실행하고 청크마다 커밋한다.
+ * 테이블 전체에 락을 오래 잡거나 undo 로그가 커지는 것을 막는다.
+ *
+ * - where 조건은 대상 엔티티의 필드만 사용해야 한다 (JPQL 벌크 연산은 조인 불가)
+ * - 청크는 id 범위 기준이므로 id 가 띄엄띄엄이면 청크당 건수가 chunkSize 보다 적을 수 있다
+ * - 청크마다 별도 트랜잭션으로 커밋하므로 이미 진행 중인 트랜잭션 안에서는 호출할 수 없다
+ *   (바깥 트랜잭션이 잡은 로우 락을 청크 트랜잭션이 기다리게 된다)
+ * - 청크마다, 그리고 끝난 뒤 영속성 컨텍스트를 비워서 이전 값의 엔티티가 조회되지 않도록 한다
+ */
+@Component
+public class ChunkedBulkExecutor {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChunkedBulkExecutor(EntityManager em, JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public ChunkedBulkProgress update(EntityPath<?> entity, NumberPath<Long> id, Predicate where,
+                                      Consumer<JPAUpdateClause> assignments,
+                                      int chunkSize, Long resumeAfterId, Consumer<ChunkedBulkProgress> listener) {
+        return execute(entity, id, where, chunkSize, resumeAfterId, listener, (from, to) -> {
+            JPAUpdateClause update = queryFactory.update(entity).where(where, id.gt(from), id.loe(to));
+            assignments.accept(update);
+            return update.execute();
+        });
+    }
+
+    public ChunkedBulkProgress delete(EntityPath<?> entity, NumberPath<Long> id, Predicate where,
+                                      int chunkSize, Long resumeAfterId, Consumer<ChunkedBulkProgress> listener) {
+        return execute(entity, id, where, chunkSize, resumeAfterId, listener, (from, to) -> queryFactory
+                .delete(entity)
+                .where(where, id.gt(from), id.loe(to))
+                .execute());
+    }
+
+    private ChunkedBulkProgress execute(EntityPath<?> entity, NumberPath<Long> id, Predicate where,
+                                        int chunkSize, Long resumeAfterId, Consumer<ChunkedBulkProgress> listener,
+                                        LongBinaryOperator chunk) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Chunked bulk execution commits per chunk and must not run inside a transaction");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+
+        Tuple bounds = queryFactory.select(id.min(), id.max()).from(entity).where(where).fetchOne();
+        Long minId = bounds == null ? null : bounds.get(id.min());
+        Long maxId = bounds == null ? null : bounds.get(id.max());
+        if (minId == null || maxId == null) {
+            return new ChunkedBulkProgress(0, 0, 0, 0);
+        }
+
+        long lower = resumeAfterId != null ? resumeAfterId : minId - 1;
+        ChunkedBulkProgress progress = new ChunkedBulkProgress(maxId, lower, 0, 0);
+        while (lower < maxId) {
+            long from = lower;
+            long to = Math.min(lower + chunkSize, maxId);
+            long affected;
+            try {
+                affected = transactionTemplate.execute(status -> {
+                    long count = chunk.applyAsLong(from, to);
+                    em.clear();
+                    return count;
+                });
+            } catch (RuntimeException e) {
+                throw new ChunkedBulkException(progress, e);
+            }
+            lower = to;
+            progress = progress.next(to, affected);
+            if (listener != null) {
+                listener.accept(progress);
+            }
+        }
+
+        em.clear();
+        return progress;
+    }
+
+}
@@ -0,0 +1,34 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * ChunkedBulkExecutor 진행 상황
+ * 실패했을 때 lastCompletedId 를 resumeAfterId 로 넘기면 커밋된 청크 다음부터 이어서 실행한다.
+ */
+@Getter
+@ToString
+public class ChunkedBulkProgress {
+
+    private final long maxId;
+    private final long lastCompletedId;
+    private final long affectedRows;
+    private final int completedChunks;
+
+    ChunkedBulkProgress(long maxId, long lastCompletedId, long affectedRows, int completedChunks) {
+        this.maxId = maxId;
+        this.lastCompletedId = lastCompletedId;
+        this.affectedRows = affectedRows;
+        this.completedChunks = completedChunks;
+    }
+
+    ChunkedBulkProgress next(long completedId, long affected) {
+        return new ChunkedBulkProgress(maxId, completedId, affectedRows + affected, completedChunks + 1);
+    }
+
+    public boolean isDone() {
+        return lastCompletedId >= maxId;
+    }
+
+}
@@ -0,0 +1,118 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 count 쿼리 결과 캐시
+ * 같은 검색 조건으로 페이지만 바꿔가며 조회할 때 count 쿼리를 반복하지 않는다.
+ * 크기 제한(LRU)과 TTL 을 함께 적용하고, member/team 테이블에 쓰기가 일어나면 전체를 비운다.
+ * count 쿼리는 synchronized 밖에서 실행하므로 모니터를 잡은 채 I/O 로 기다리지 않는다. (가상 스레드에서도 고정되지 않음)
+ */
+@Component
+public class CountCache implements MeterBinder {
+
+    private static final Set<String> WATCHED_TABLES = Set.of("member", "team");
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Object, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private long generation;
+
+    public CountCache(@Value("${member.count-cache.max-size:1000}") int maxSize,
+                      @Value("${member.count-cache.ttl:30s}") Duration ttl,
+                      TableWriteNotifier tableWriteNotifier) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > CountCache.this.maxSize;
+            }
+        };
+        tableWriteNotifier.addListener(table -> {
+            if (WATCHED_TABLES.contains(table)) {
+                invalidateAll();
+            }
+        });
+    }
+
+    public long get(Object key, LongSupplier countQuery) {
+        long loadedGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hitCount.incrementAndGet();
+                return entry.total;
+            }
+            missCount.incrementAndGet();
+            loadedGeneration = generation;
+        }
+
+        long total = countQuery.getAsLong();
+
+        synchronized (this) {
+            //count 쿼리 실행 중에 무효화 되었다면 이전 값일 수 있으므로 저장하지 않는다
+            if (loadedGeneration == generation) {
+                entries.put(key, new Entry(total, System.nanoTime() + ttlNanos));
+            }
+        }
+        return total;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("member.count.cache.requests", this, CountCache::getHitCount)
+                .tag("result", "hit")
+                .description("count 쿼리를 생략한 횟수")
+                .register(registry);
+        FunctionCounter.builder("member.count.cache.requests", this, CountCache::getMissCount)
+                .tag("result", "miss")
+                .description("count 쿼리를 실행한 횟수")
+                .register(registry);
+        Gauge.builder("member.count.cache.size", this, CountCache::size)
+                .register(registry);
+    }
+
+    private static class Entry {
+        private final long total;
+        private final long expiresAt;
+
+        private Entry(long total, long expiresAt) {
+            this.total = total;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
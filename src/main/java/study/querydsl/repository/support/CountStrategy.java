@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+/**
+ * 페이징 전체 카운트를 구하는 방법
+ */
+public enum CountStrategy {
+
+    /** count 쿼리로 정확한 전체 개수를 구한다 */
+    EXACT,
+
+    /** cap + 1 번째 행이 있는지만 확인해서 있으면 "cap 건 이상", 없으면 정확한 개수를 구한다 */
+    CAPPED,
+
+    /** 조건이 없을 때 DB 테이블 통계의 추정치를 사용한다 (H2, MySQL) */
+    ESTIMATED
+
+}
@@ -0,0 +1,31 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * 전체 개수를 어떤 방법으로 구했는지 함께 알려주는 Page
+ * capped 가 true 이면 totalElements 는 실제 개수의 하한값이다.
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private final CountStrategy countStrategy;
+    private final boolean capped;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, CountStrategy countStrategy, boolean capped) {
+        super(content, pageable, total);
+        this.countStrategy = countStrategy;
+        this.capped = capped;
+    }
+
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    public boolean isCapped() {
+        return capped;
+    }
+
+}
@@ -0,0 +1,141 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+/**
+ * CountStrategy 에 따라 전체 개수를 구해서 CountedPage 를 만든다.
+ * PageableExecutionUtils 와 마찬가지로 count 가 필요 없는 페이지에서는 count 쿼리를 실행하지 않는다.
+ */
+public class PageCounter {
+
+    public static final int DEFAULT_CAP = 1000;
+
+    private static final String H2_ESTIMATE =
+            "select row_count_estimate from information_schema.tables where lower(table_name) = ?";
+    private static final String MYSQL_ESTIMATE =
+            "select table_rows from information_schema.tables where table_schema = database() and lower(table_name) = ?";
+
+    private final EntityManager entityManager;
+    private final int cap;
+
+    public PageCounter(EntityManager entityManager) {
+        this(entityManager, DEFAULT_CAP);
+    }
+
+    public PageCounter(EntityManager entityManager, int cap) {
+        this.entityManager = entityManager;
+        this.cap = cap;
+    }
+
+    public <T> CountedPage<T> getPage(List<T> content, Pageable pageable, JPAQuery<?> countQuery, CountStrategy strategy) {
+        return getPage(content, pageable, countQuery, strategy, countQuery::fetchCount);
+    }
+
+    /**
+     * @param exactCount EXACT 일 때 사용할 count (캐시 등을 거치고 싶을 때 지정)
+     */
+    public <T> CountedPage<T> getPage(List<T> content, Pageable pageable, JPAQuery<?> countQuery,
+                                      CountStrategy strategy, LongSupplier exactCount) {
+        CountResult[] result = {new CountResult(CountStrategy.EXACT, false)};
+        LongSupplier total = () -> {
+            CountStrategy used = strategy;
+            if (used == CountStrategy.ESTIMATED) {
+                OptionalLong estimate = estimate(countQuery);
+                if (estimate.isPresent()) {
+                    result[0] = new CountResult(CountStrategy.ESTIMATED, false);
+                    return estimate.getAsLong();
+                }
+                used = CountStrategy.CAPPED;
+            }
+            if (used == CountStrategy.CAPPED) {
+                //현재 페이지까지는 이동할 수 있도록 상한은 offset + size 보다 작지 않게 한다
+                long limit = Math.max(cap, pageable.getOffset() + pageable.getPageSize());
+                boolean capped = hasRowAfter(countQuery, limit);
+                result[0] = new CountResult(CountStrategy.CAPPED, capped);
+                return capped ? limit : countQuery.fetchCount();
+            }
+            return exactCount.getAsLong();
+        };
+
+        //첫 페이지/마지막 페이지처럼 count 가 필요 없으면 supplier 가 호출되지 않고 EXACT 로 남는다
+        long totalElements = PageableExecutionUtils.getPage(content, pageable, total).getTotalElements();
+        return new CountedPage<>(content, pageable, totalElements, result[0].strategy, result[0].capped);
+    }
+
+    /**
+     * limit 건 다음 행이 있는지 확인 (offset 만큼은 DB 에서 건너뛰고 최대 한 건만 가져온다)
+     * 없으면 전체가 limit 건 이하이므로 count 쿼리도 그만큼만 센다.
+     */
+    private static boolean hasRowAfter(JPAQuery<?> countQuery, long limit) {
+        return !countQuery.clone()
+                .select(Expressions.numberTemplate(Integer.class, "1"))
+                .offset(limit)
+                .limit(1)
+                .fetch()
+                .isEmpty();
+    }
+
+    /**
+     * 조건 없이 단일 엔티티를 세는 경우에만 테이블 통계를 사용한다.
+     */
+    private OptionalLong estimate(JPAQuery<?> countQuery) {
+        if (countQuery.getMetadata().getWhere() != null || countQuery.getMetadata().getJoins().size() != 1) {
+            return OptionalLong.empty();
+        }
+        Class<?> entityType = countQuery.getMetadata().getJoins().get(0).getTarget().getType();
+        EntityPersister persister = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(entityType);
+        if (!(persister instanceof AbstractEntityPersister)) {
+            return OptionalLong.empty();
+        }
+        String table = ((AbstractEntityPersister) persister).getTableName();
+        String tableName = table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            String product = connection.getMetaData().getDatabaseProductName();
+            String sql = "H2".equalsIgnoreCase(product) ? H2_ESTIMATE
+                    : "MySQL".equalsIgnoreCase(product) ? MYSQL_ESTIMATE : null;
+            if (sql == null) {
+                return OptionalLong.empty();
+            }
+            //통계 조회 실패가 트랜잭션 롤백으로 이어지지 않도록 JDBC 에서 직접 처리
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, tableName);
+                try (ResultSet rs = statement.executeQuery()) {
+                    return rs.next() ? OptionalLong.of(rs.getLong(1)) : OptionalLong.empty();
+                }
+            } catch (SQLException e) {
+                return OptionalLong.empty();
+            }
+        });
+    }
+
+    private static class CountResult {
+        private final CountStrategy strategy;
+        private final boolean capped;
+
+        private CountResult(CountStrategy strategy, boolean capped) {
+            this.strategy = strategy;
+            this.capped = capped;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.datasource.ReplicaRoute;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 컨텐츠 쿼리와 count 쿼리를 동시에 실행한다.
+ * count 쿼리는 별도 EntityManager(별도 커넥션)에서 실행하고, 컨텐츠 조회가 끝난 뒤 결과를 합쳐서 Page 를 만든다.
+ *
+ * READ COMMITTED 에서는 순차 실행도 두 쿼리가 각자 실행 시점의 커밋된 데이터를 보므로, 동시 실행해도 보장 수준은 같다.
+ * 다만 별도 커넥션은 현재 트랜잭션에서 아직 커밋하지 않은 변경을 볼 수 없으므로,
+ * 쓰기 트랜잭션 안에서 호출하면 기존처럼 순차 실행한다.
+ * 동시 실행할 때는 두 쿼리를 같은 ReplicaRoute 로 실행해서 같은 레플리카(같은 복제 지연)에서 조회한다.
+ * count 가 필요 없으면 cancel(false) 로 아직 시작하지 않은 count 만 취소하고, 이미 실행 중이면 끝까지 실행한 뒤 결과를 버린다.
+ * (인터럽트하면 JDBC 호출 중인 풀 커넥션이 깨진 상태로 반환될 수 있다)
+ */
+@Component
+public class ParallelCountExecutor implements DisposableBean {
+
+    private final ReplicaReader replicaReader;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelCountExecutor(ReplicaReader replicaReader,
+                                 @Value("${member.parallel-count.pool-size:4}") int poolSize,
+                                 ObjectProvider<QueryThreadFactory> threadFactory) {
+        this.replicaReader = replicaReader;
+        //풀이 가득 차면 호출한 스레드에서 count 를 실행 (커넥션 풀을 넘어서 쌓이지 않도록)
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(poolSize * 16),
+                threadFactory.getIfAvailable(() -> QueryThreadFactory.PLATFORM).create("parallel-count-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * @param contentQuery offset/limit 이 적용된 컨텐츠 쿼리
+     * @param countQuery   전체 개수를 구할 쿼리
+     */
+    public <T> Page<T> getPage(JPAQuery<T> contentQuery, Pageable pageable, JPAQuery<?> countQuery) {
+        if (!canRunOnSeparateConnection()) {
+            List<T> content = contentQuery.fetch();
+            return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        }
+
+        ReplicaRoute route = new ReplicaRoute();
+        Future<Long> total = executor.submit(() -> replicaReader.read(route,
+                entityManager -> countQuery.clone(entityManager).fetchCount()));
+        List<T> content;
+        try {
+            content = route.call(contentQuery::fetch);
+        } catch (RuntimeException e) {
+            total.cancel(false);
+            throw e;
+        }
+
+        boolean[] countUsed = {false};
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            countUsed[0] = true;
+            return await(total);
+        });
+        //첫 페이지/마지막 페이지처럼 count 가 필요 없으면 결과를 기다리지 않는다
+        if (!countUsed[0]) {
+            total.cancel(false);
+        }
+        return page;
+    }
+
+    private boolean canRunOnSeparateConnection() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static long await(Future<Long> total) {
+        try {
+            return total.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            total.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Count query failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,268 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.datasource.ReplicaRoute;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 테이블 전체를 id 범위로 나눠서 동시에 조회한다.
+ * id 의 min/max 를 구해서 partitions 개의 같은 폭 범위로 나누고, 범위마다 쿼리를 복사해서(where id >= from and id < to)
+ * ForkJoinPool 스레드에서 별도 EntityManager(별도 커넥션, 읽기 전용 트랜잭션, ReplicaReader)로 실행한다.
+ * min/max 조회와 범위 조회는 같은 ReplicaRoute 로 실행해서 같은 레플리카에서 읽는다.
+ * 결과는 크기가 제한된 큐로 합쳐서 하나의 Stream 으로 돌려주므로, 소비가 느리면 조회 스레드가 기다린다.
+ *
+ * - 결과 순서는 보장하지 않는다 (범위 안에서는 쿼리의 정렬을 따른다)
+ * - 반환된 엔티티는 분리된 상태이므로 지연 로딩은 할 수 없다 (필요한 연관관계는 페치 조인)
+ * - offset/limit 이 있는 쿼리는 범위마다 적용되므로 사용하지 않는다
+ * - 별도 커넥션은 현재 트랜잭션에서 커밋하지 않은 변경을 볼 수 없으므로 쓰기 트랜잭션 안에서는 호출할 수 없다
+ * - id 가 한쪽에 몰려 있으면 범위마다 건수가 달라서 가장 큰 범위가 전체 시간을 결정한다
+ * - 동시에 커넥션을 parallelism 개까지 사용하므로 커넥션 풀 크기(spring.datasource.hikari.maximum-pool-size)보다 작게 설정한다
+ * - Stream 은 try-with-resources 로 닫아야 중간에 그만둘 때 조회 스레드가 정리된다
+ */
+@Slf4j
+@Component
+public class PartitionedScanner implements DisposableBean {
+
+    private static final Object NULL_ROW = new Object();
+    private static final Object END = new Object();
+
+    private final ReplicaReader replicaReader;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public PartitionedScanner(ReplicaReader replicaReader,
+                              @Value("${member.partitioned-scan.parallelism:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int parallelism,
+                              @Value("${member.partitioned-scan.chunk-size:1000}") int chunkSize) {
+        this.replicaReader = replicaReader;
+        this.chunkSize = chunkSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("partitioned-scan-" + threadNumber.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * 실행 중이거나 대기 중인 범위 조회가 없으면 true
+     */
+    boolean isIdle() {
+        return pool.isQuiescent();
+    }
+
+    /**
+     * parallelism 개 범위로 나눠서 조회
+     */
+    public <T> Stream<T> scan(JPAQuery<T> query, NumberPath<Long> id) {
+        return scan(query, id, pool.getParallelism());
+    }
+
+    /**
+     * @param query      where 까지 적용된 쿼리 (복사해서 사용하므로 변경되지 않는다)
+     * @param id         범위를 나눌 id 경로 (인덱스가 있는 PK)
+     * @param partitions 범위 수
+     */
+    public <T> Stream<T> scan(JPAQuery<T> query, NumberPath<Long> id, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new IllegalStateException("Partitioned scan uses separate connections and must not run inside a write transaction");
+        }
+
+        ReplicaRoute route = new ReplicaRoute();
+        List<long[]> ranges = route.call(() -> ranges(query, id, partitions));
+        Scan scan = new Scan(ranges.size(), chunkSize * 2);
+        for (long[] range : ranges) {
+            //쿼리 복사는 호출한 스레드에서 (원본 쿼리를 여러 스레드에서 동시에 읽지 않도록)
+            JPAQuery<T> rangeQuery = query.clone().where(id.goe(range[0]), id.lt(range[1]));
+            scan.tasks.add(pool.submit(() -> scanRange(scan, route, rangeQuery, range[0], range[1])));
+        }
+        Iterator<T> iterator = scan.iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, 0), false)
+                .onClose(scan::cancel);
+    }
+
+    /**
+     * [from, to) 범위 목록 (조건에 맞는 행이 없으면 빈 목록)
+     */
+    List<long[]> ranges(JPAQuery<?> query, NumberPath<Long> id, int partitions) {
+        JPAQuery<Tuple> boundsQuery = query.clone().select(id.min(), id.max());
+        boundsQuery.getMetadata().clearOrderBy();
+        Tuple bounds = boundsQuery.fetchOne();
+        Long minId = bounds == null ? null : bounds.get(id.min());
+        Long maxId = bounds == null ? null : bounds.get(id.max());
+        if (minId == null || maxId == null) {
+            return List.of();
+        }
+
+        long width = Math.max(1, (maxId - minId + partitions) / partitions);
+        List<long[]> ranges = new ArrayList<>(partitions);
+        for (long from = minId; from <= maxId; from += width) {
+            ranges.add(new long[]{from, Math.min(from + width, maxId + 1)});
+        }
+        return ranges;
+    }
+
+    private <T> void scanRange(Scan scan, ReplicaRoute route, JPAQuery<T> rangeQuery, long from, long to) {
+        try {
+            replicaReader.read(route, entityManager -> {
+                try (CloseableIterator<T> rows = rangeQuery.clone(entityManager)
+                        .setHint(QueryHints.HINT_FETCH_SIZE, chunkSize)
+                        .iterate()) {
+                    int loaded = 0;
+                    while (rows.hasNext() && !scan.cancelled) {
+                        T row = rows.next();
+                        scan.put(row != null ? row : NULL_ROW);
+                        //큐에 넘긴 엔티티는 이 EntityManager 에서 더 쓰지 않으므로 주기적으로 비운다
+                        if (++loaded % chunkSize == 0) {
+                            entityManager.clear();
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            if (!scan.cancelled) {
+                log.warn("id 범위 [{}, {}) 조회 실패", from, to, e);
+            }
+            scan.fail(e);
+        } finally {
+            scan.put(END);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private static class Scan {
+        private final BlockingQueue<Object> queue;
+        private final List<Future<?>> tasks = new ArrayList<>();
+        private volatile boolean cancelled;
+        private volatile RuntimeException failure;
+        private int running;
+
+        private Scan(int partitions, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.running = partitions;
+        }
+
+        /**
+         * 큐가 가득 차 있으면 기다리되, 취소되면 버린다
+         */
+        private void put(Object row) {
+            try {
+                while (!cancelled) {
+                    if (queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            cancelled = true;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            queue.clear();
+            for (Future<?> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> Iterator<T> iterator() {
+            return new Iterator<>() {
+                private Object next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null) {
+                        //fail 은 failure 를 먼저 기록하고 cancelled 를 표시하므로 cancelled 다음에 failure 를 확인한다
+                        if (cancelled) {
+                            if (failure != null) {
+                                throw failure;
+                            }
+                            return false;
+                        }
+                        if (running == 0) {
+                            return false;
+                        }
+                        Object row = poll();
+                        if (row == null) {
+                            continue;
+                        }
+                        if (row == END) {
+                            running--;
+                        } else {
+                            next = row;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Object row = next;
+                    next = null;
+                    return row == NULL_ROW ? null : (T) row;
+                }
+            };
+        }
+
+        /**
+         * 취소(다른 범위의 실패 포함)를 확인할 수 있도록 잠깐씩만 기다린다
+         */
+        private Object poll() {
+            try {
+                return queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new IllegalStateException("Interrupted while waiting for partitioned scan", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package study.querydsl.repository.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 리포지토리 메서드 한 번 호출에서 허용하는 statement 수 (메서드 안에서 flush 되는 insert/update 포함)
+ * 초과하면 member.query-budget.fail-on-exceed=true 일 때 예외(테스트), 아니면 경고 로그(운영)
+ * 반환된 엔티티의 지연 로딩은 메서드 밖에서 일어나므로 요청 단위 카운트(QueryCountFilter)로 확인한다.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryBudget {
+
+    int value();
+
+}
@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
+
+/**
+ * @QueryBudget 이 붙은 메서드에서 실행된 statement 수를 세서 메트릭(repository.queries)으로 남기고 예산 초과를 검사한다.
+ * 호출한 쪽의 쓰기 트랜잭션에 flush 되지 않은 변경이 있으면 먼저 flush 해서 메서드의 statement 수에 포함되지 않게 한다.
+ * 같은 빈 안의 자기 호출(this.method())은 프록시를 거치지 않으므로 세지 않는다.
+ */
+@Slf4j
+@Aspect
+@Component
+public class QueryBudgetAspect {
+
+    private final QueryCounter queryCounter;
+    private final EntityManager em;
+    private final MeterRegistry meterRegistry;
+    private final boolean failOnExceed;
+
+    public QueryBudgetAspect(QueryCounter queryCounter, EntityManager em, MeterRegistry meterRegistry,
+                             @Value("${member.query-budget.fail-on-exceed:false}") boolean failOnExceed) {
+        this.queryCounter = queryCounter;
+        this.em = em;
+        this.meterRegistry = meterRegistry;
+        this.failOnExceed = failOnExceed;
+    }
+
+    @Around("@annotation(study.querydsl.repository.support.QueryBudget) || @within(study.querydsl.repository.support.QueryBudget)")
+    public Object checkBudget(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+        QueryCounter.Scope scope = queryCounter.start();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } finally {
+            scope.close();
+        }
+        long used = scope.getCount();
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<?> targetClass = AopUtils.getTargetClass(joinPoint.getTarget());
+        String name = targetClass.getSimpleName() + "." + method.getName();
+        QueryBudget budget = findBudget(AopUtils.getMostSpecificMethod(method, targetClass), targetClass);
+
+        DistributionSummary.builder("repository.queries")
+                .tag("method", name)
+                .register(meterRegistry)
+                .record(used);
+
+        if (budget != null && used > budget.value()) {
+            String message = name + " 쿼리 예산 초과: " + used + " > " + budget.value();
+            if (failOnExceed) {
+                throw new QueryBudgetExceededException(message);
+            }
+            log.warn(message);
+        }
+        return result;
+    }
+
+    private QueryBudget findBudget(Method method, Class<?> targetClass) {
+        QueryBudget budget = AnnotatedElementUtils.findMergedAnnotation(method, QueryBudget.class);
+        return budget != null ? budget : AnnotatedElementUtils.findMergedAnnotation(targetClass, QueryBudget.class);
+    }
+
+}
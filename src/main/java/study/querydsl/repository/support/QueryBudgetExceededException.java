@@ -0,0 +1,9 @@
+package study.querydsl.repository.support;
+
+public class QueryBudgetExceededException extends RuntimeException {
+
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,169 @@
+package study.querydsl.repository.support;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+
+/**
+ * 스레드별 statement 실행 횟수 (p6spy 이벤트 리스너)
+ * select 뿐 아니라 flush 로 나가는 insert/update/delete, 벌크 쿼리도 센다. (executeBatch 는 한 번)
+ * 열려 있는 구간(Scope)이 있을 때만 세고, 마지막 구간을 닫으면 스레드의 값을 지운다. (풀 스레드에 남지 않는다)
+ * 트랜잭션 동기화가 활성화되어 있으면 트랜잭션 단위로도 세서 완료 시 메트릭(transaction.queries)으로 남긴다.
+ * 다른 스레드에서 실행되는 쿼리(ParallelCountExecutor 의 count 쿼리 등)는 호출한 스레드에 포함되지 않는다.
+ */
+@Component
+public class QueryCounter extends JdbcEventListener {
+
+    private final ThreadLocal<Counts> counts = new ThreadLocal<>();
+    private final DistributionSummary transactionQueries;
+
+    public QueryCounter(MeterRegistry meterRegistry) {
+        this.transactionQueries = DistributionSummary.builder("transaction.queries")
+                .description("트랜잭션 하나에서 실행된 statement 수")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecuteQuery(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos, int rowCount, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos, String sql, int rowCount, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecute(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecute(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        increment();
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos, int[] updateCounts, SQLException e) {
+        increment();
+    }
+
+    private void increment() {
+        Counts current = counts.get();
+        if (current != null) {
+            current.statements++;
+        }
+        TransactionCount transactionCount = transactionCount(true);
+        if (transactionCount != null) {
+            transactionCount.statements++;
+        }
+    }
+
+    /**
+     * 현재 트랜잭션에서 지금까지 실행된 statement 수 (트랜잭션 동기화가 없으면 0)
+     */
+    public long getTransactionCount() {
+        TransactionCount transactionCount = transactionCount(false);
+        return transactionCount == null ? 0 : transactionCount.statements;
+    }
+
+    /**
+     * 동기화 객체에 값을 두므로 REQUIRES_NEW 로 바깥 트랜잭션이 중단되면 같이 중단되고, 완료되면 같이 정리된다.
+     */
+    private TransactionCount transactionCount(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionCount && ((TransactionCount) synchronization).owner == this) {
+                return (TransactionCount) synchronization;
+            }
+        }
+        if (!create) {
+            return null;
+        }
+        TransactionCount transactionCount = new TransactionCount(this);
+        TransactionSynchronizationManager.registerSynchronization(transactionCount);
+        return transactionCount;
+    }
+
+    /**
+     * 구간 시작. 끝나면 반드시 close 한다. (중첩 가능)
+     */
+    public Scope start() {
+        Counts current = counts.get();
+        if (current == null) {
+            current = new Counts();
+            counts.set(current);
+        }
+        current.scopes++;
+        return new Scope(current);
+    }
+
+    private static class Counts {
+        private long statements;
+        private int scopes;
+    }
+
+    private static class TransactionCount implements TransactionSynchronization {
+        private final QueryCounter owner;
+        private long statements;
+
+        private TransactionCount(QueryCounter owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            owner.transactionQueries.record(statements);
+        }
+    }
+
+    public class Scope implements AutoCloseable {
+
+        private final Counts counts;
+        private final long start;
+        private long end = -1;
+
+        private Scope(Counts counts) {
+            this.counts = counts;
+            this.start = counts.statements;
+        }
+
+        /**
+         * 구간에서 실행된 statement 수 (닫은 뒤에는 닫을 때의 값)
+         */
+        public long getCount() {
+            return (end < 0 ? counts.statements : end) - start;
+        }
+
+        @Override
+        public void close() {
+            if (end >= 0) {
+                return;
+            }
+            end = counts.statements;
+            if (--counts.scopes == 0) {
+                QueryCounter.this.counts.remove();
+            }
+        }
+    }
+
+}
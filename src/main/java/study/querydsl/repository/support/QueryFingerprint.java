@@ -0,0 +1,161 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Querydsl 쿼리 결과 캐시 키
+ * QueryMetadata 를 JPQL 로 직렬화한 문자열(프로젝션, 조인, where, group by, having, order by)과
+ * 바인딩 값(상수, 파라미터), offset/limit, 테넌트로 구성한다.
+ * 힌트(엔티티 그래프 등)와 락 모드는 JPAQuery 에 있으므로 키에 포함되지 않는다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode(exclude = "entityTypes")
+public final class QueryFingerprint {
+
+    private final Object tenant;
+    private final String jpql;
+    private final Object constants;
+    private final Map<ParamExpression<?>, Object> params;
+    private final QueryModifiers modifiers;
+
+    //쿼리가 참조하는 엔티티 타입 (서브쿼리 포함), 캐시 무효화 태그로 사용
+    private final Set<Class<?>> entityTypes;
+
+    private QueryFingerprint(Object tenant, String jpql, Object constants, Map<ParamExpression<?>, Object> params,
+                             QueryModifiers modifiers, Set<Class<?>> entityTypes) {
+        this.tenant = tenant;
+        this.jpql = jpql;
+        this.constants = constants;
+        this.params = params;
+        this.modifiers = modifiers;
+        this.entityTypes = entityTypes;
+    }
+
+    public static QueryFingerprint of(Object tenant, QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT);
+        serializer.serialize(metadata, false, null);
+
+        Set<Class<?>> entityTypes = new HashSet<>();
+        collectEntityTypes(metadata, entityTypes);
+
+        return new QueryFingerprint(tenant, serializer.toString(), serializer.getConstants(),
+                new HashMap<>(metadata.getParams()), metadata.getModifiers(),
+                Collections.unmodifiableSet(entityTypes));
+    }
+
+    private static void collectEntityTypes(QueryMetadata metadata, Set<Class<?>> types) {
+        accept(metadata.getProjection(), types);
+        for (JoinExpression join : metadata.getJoins()) {
+            accept(join.getTarget(), types);
+            accept(join.getCondition(), types);
+        }
+        accept(metadata.getWhere(), types);
+        for (Expression<?> groupBy : metadata.getGroupBy()) {
+            accept(groupBy, types);
+        }
+        accept(metadata.getHaving(), types);
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            accept(order.getTarget(), types);
+        }
+    }
+
+    private static void accept(Expression<?> expression, Set<Class<?>> types) {
+        if (expression != null) {
+            expression.accept(EntityTypeCollector.INSTANCE, types);
+        }
+    }
+
+    private static final class EntityTypeCollector implements Visitor<Void, Set<Class<?>>> {
+
+        private static final EntityTypeCollector INSTANCE = new EntityTypeCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Class<?>> types) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Class<?>> types) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, types);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Class<?>> types) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, types);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Class<?>> types) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Class<?>> types) {
+            addIfEntity(expr.getType(), types);
+            //컬렉션 경로(team.members)는 원소 타입
+            if (expr instanceof CollectionExpression) {
+                addIfEntity(((CollectionExpression<?, ?>) expr).getParameter(0), types);
+            }
+            Path<?> parent = expr.getMetadata().getParent();
+            if (parent != null) {
+                parent.accept(this, types);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Class<?>> types) {
+            collectEntityTypes(expr.getMetadata(), types);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Class<?>> types) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, types);
+                }
+            }
+            return null;
+        }
+
+        private static void addIfEntity(Class<?> type, Set<Class<?>> types) {
+            if (type.isAnnotationPresent(Entity.class)) {
+                types.add(type);
+            }
+        }
+    }
+
+}
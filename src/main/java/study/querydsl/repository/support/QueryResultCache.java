@@ -0,0 +1,277 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Querydsl 쿼리 결과 캐시 (QueryFingerprint 를 키로 사용)
+ * 항목마다 쿼리가 참조하는 엔티티의 테이블을 태그로 두고, 그 테이블에 쓰기(flush, 벌크 update/delete)가 일어나면 제거한다.
+ * 크기 제한(LRU)과 TTL 은 CountCache 와 같은 방식이다.
+ *
+ * 쓰기 트랜잭션에서는 조회 전에 flush 해서 대기 중인 변경을 먼저 반영하고,
+ * 현재 트랜잭션에서 쓴 테이블을 참조하는 쿼리는(커밋 전 데이터이므로) 캐시하지 않고 바로 실행한다.
+ * 캐시된 목록과 원소는 여러 호출자가 함께 사용하므로 변경하면 안 된다.
+ * 엔티티는 영속성 컨텍스트에 속한 변경 가능한 객체이므로 캐시하지 않는다. 프로젝션(Tuple, DTO 생성자 인자 포함)에
+ * 엔티티가 있으면 IllegalArgumentException 으로 거부하므로 DTO/Tuple 스칼라 프로젝션으로 조회한다.
+ */
+@Component
+public class QueryResultCache implements MeterBinder {
+
+    private final EntityManager em;
+    private final TableWriteNotifier tableWriteNotifier;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<QueryFingerprint, Entry> entries;
+    private final Map<String, Long> tableGenerations = new HashMap<>();
+    private final Map<Class<?>, Set<String>> entityTables = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong bypassCount = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public QueryResultCache(EntityManager em, TableWriteNotifier tableWriteNotifier,
+                            @Value("${member.query-cache.max-size:500}") int maxSize,
+                            @Value("${member.query-cache.ttl:5m}") Duration ttl) {
+        this.em = em;
+        this.tableWriteNotifier = tableWriteNotifier;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryFingerprint, Entry> eldest) {
+                return size() > QueryResultCache.this.maxSize;
+            }
+        };
+        tableWriteNotifier.addListener(this::invalidate);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> fetch(JPAQuery<T> query) {
+        Expression<?> projection = query.getMetadata().getProjection();
+        if (projection == null || containsEntity(projection)) {
+            throw new IllegalArgumentException("Only scalar, DTO or Tuple projections can be cached: " + projection);
+        }
+        flushPendingChanges();
+
+        QueryFingerprint fingerprint = QueryFingerprint.of(currentTenant(), query.getMetadata());
+        Set<String> tables = tablesOf(fingerprint.getEntityTypes());
+        if (tables.isEmpty() || writtenInCurrentTransaction(tables)) {
+            bypassCount.incrementAndGet();
+            return query.fetch();
+        }
+
+        Map<String, Long> loadedGenerations;
+        lock.lock();
+        try {
+            Entry entry = entries.get(fingerprint);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hitCount.incrementAndGet();
+                return (List<T>) entry.results;
+            }
+            missCount.incrementAndGet();
+            loadedGenerations = generationsOf(tables);
+        } finally {
+            lock.unlock();
+        }
+
+        List<T> results = Collections.unmodifiableList(new ArrayList<>(query.fetch()));
+
+        lock.lock();
+        try {
+            //조회 중에 태그된 테이블에 쓰기가 있었다면 이전 값일 수 있으므로 저장하지 않는다
+            if (loadedGenerations.equals(generationsOf(tables))) {
+                entries.put(fingerprint, new Entry(results, tables, System.nanoTime() + ttlNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return results;
+    }
+
+    /**
+     * table 을 참조하는 항목 제거
+     */
+    public void invalidate(String table) {
+        lock.lock();
+        try {
+            tableGenerations.merge(table, 1L, Long::sum);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().tables.contains(table)) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            for (Entry entry : entries.values()) {
+                for (String table : entry.tables) {
+                    tableGenerations.merge(table, 1L, Long::sum);
+                }
+            }
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getBypassCount() {
+        return bypassCount.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.query.cache.requests", this, QueryResultCache::getHitCount)
+                .tag("result", "hit")
+                .description("캐시된 결과를 반환한 횟수")
+                .register(registry);
+        FunctionCounter.builder("querydsl.query.cache.requests", this, QueryResultCache::getMissCount)
+                .tag("result", "miss")
+                .description("쿼리를 실행하고 캐시에 저장한 횟수")
+                .register(registry);
+        FunctionCounter.builder("querydsl.query.cache.requests", this, QueryResultCache::getBypassCount)
+                .tag("result", "bypass")
+                .description("캐시를 사용하지 않고 실행한 횟수")
+                .register(registry);
+        Gauge.builder("querydsl.query.cache.size", this, QueryResultCache::size)
+                .register(registry);
+    }
+
+    /**
+     * 쓰기 트랜잭션에서 아직 flush 되지 않은 변경이 있으면 먼저 반영한다. (쿼리 실행 전 자동 flush 와 같은 효과)
+     * flush 로 나간 SQL 이 TableWriteNotifier 를 거치면서 관련 항목이 제거된다.
+     */
+    private void flushPendingChanges() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+
+    private boolean containsEntity(Expression<?> projection) {
+        if (projection instanceof FactoryExpression) {
+            for (Expression<?> arg : ((FactoryExpression<?>) projection).getArgs()) {
+                if (containsEntity(arg)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return sessionFactory().getMetamodel().entityPersisters().containsKey(projection.getType().getName());
+    }
+
+    private boolean writtenInCurrentTransaction(Set<String> tables) {
+        for (String written : tableWriteNotifier.tablesWrittenInCurrentTransaction()) {
+            if (tables.contains(written)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Long> generationsOf(Set<String> tables) {
+        Map<String, Long> generations = new HashMap<>();
+        for (String table : tables) {
+            generations.put(table, tableGenerations.getOrDefault(table, 0L));
+        }
+        return generations;
+    }
+
+    private Set<String> tablesOf(Set<Class<?>> entityTypes) {
+        Set<String> tables = new HashSet<>();
+        for (Class<?> entityType : entityTypes) {
+            tables.addAll(entityTables.computeIfAbsent(entityType, this::loadTables));
+        }
+        return tables;
+    }
+
+    /**
+     * 엔티티가 매핑된 테이블 (상속, 세컨더리 테이블 포함)
+     */
+    private Set<String> loadTables(Class<?> entityType) {
+        EntityPersister persister = sessionFactory().getMetamodel().entityPersisters().get(entityType.getName());
+        if (persister == null) {
+            return Set.of();
+        }
+        Set<String> tables = new HashSet<>();
+        for (Serializable space : persister.getQuerySpaces()) {
+            tables.add(TableWriteNotifier.tableName(space.toString()));
+        }
+        return Collections.unmodifiableSet(tables);
+    }
+
+    /**
+     * 멀티 테넌시가 설정되어 있으면 테넌트별로 다른 키를 사용한다. (설정이 없으면 null)
+     */
+    private Object currentTenant() {
+        CurrentTenantIdentifierResolver resolver = sessionFactory().getCurrentTenantIdentifierResolver();
+        return resolver != null ? resolver.resolveCurrentTenantIdentifier() : null;
+    }
+
+    private SessionFactoryImplementor sessionFactory() {
+        return em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+    }
+
+    private static class Entry {
+        private final List<?> results;
+        private final Set<String> tables;
+        private final long expiresAt;
+
+        private Entry(List<?> results, Set<String> tables, long expiresAt) {
+            this.results = results;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package study.querydsl.repository.support;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 쿼리 실행 풀(AsyncQueryExecutor, ParallelCountExecutor)의 스레드 생성
+ * 기본은 플랫폼 스레드이고, virtual 프로파일에서는 VirtualThreadConfig 가 가상 스레드로 바꾼다.
+ * 어느 쪽이든 풀 크기가 동시에 실행되는 쿼리 수(사용하는 커넥션 수)를 제한한다.
+ */
+@FunctionalInterface
+public interface QueryThreadFactory {
+
+    QueryThreadFactory PLATFORM = CustomizableThreadFactory::new;
+
+    ThreadFactory create(String namePrefix);
+
+}
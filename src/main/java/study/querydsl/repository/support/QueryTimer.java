@@ -0,0 +1,93 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Querydsl 쿼리 실행 시간 측정 (TimedJPAQueryFactory 에서 사용)
+ *
+ * querydsl.query 타이머(히스토그램)를 쿼리 지문(fingerprint)과 실행 방법(fetch, fetchOne ...)으로 태깅한다.
+ * 지문은 JPQL 의 해시이고, 조건 값은 파라미터(?1)로 직렬화되므로 값이 달라도 같은 모양의 쿼리는 같은 지문이 된다.
+ * 새 지문은 처음 한 번 JPQL 과 함께 로그로 남기고, 태그 수가 늘어나지 않도록 max-fingerprints 를 넘으면 other 로 묶는다.
+ * slow-query-threshold 를 넘은 쿼리는 JPQL 과 바인딩 값을 경고 로그로 남긴다.
+ */
+@Slf4j
+@Component
+public class QueryTimer {
+
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+    private final int maxFingerprints;
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    public QueryTimer(MeterRegistry meterRegistry,
+                      @Value("${querydsl.slow-query-threshold:500ms}") Duration slowQueryThreshold,
+                      @Value("${querydsl.max-fingerprints:500}") int maxFingerprints) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * JPQL 을 한 번 직렬화해서 지문과 느린 쿼리 로그에 같이 사용 (한 번만 실행하는 update/delete 용)
+     */
+    public <R> R record(String operation, Supplier<String> jpql, Supplier<Object> bindings, Supplier<R> query) {
+        String[] serialized = new String[1];
+        Supplier<String> once = () -> serialized[0] != null ? serialized[0] : (serialized[0] = jpql.get());
+        return record(operation, () -> fingerprint(once.get()), once, bindings, query);
+    }
+
+    /**
+     * @param fingerprint 측정 후에 호출된다 (쿼리 인스턴스에 캐시해 두고 매번 직렬화하지 않는다)
+     * @param jpql        느린 쿼리일 때만 호출된다 (직렬화 비용)
+     * @param bindings    느린 쿼리일 때만 호출된다
+     */
+    public <R> R record(String operation, Supplier<String> fingerprint, Supplier<String> jpql,
+                        Supplier<Object> bindings, Supplier<R> query) {
+        long start = System.nanoTime();
+        try {
+            return query.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            String tag = fingerprint.get();
+
+            Timer.builder("querydsl.query")
+                    .tag("fingerprint", tag)
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(elapsed));
+
+            if (elapsed > slowQueryNanos) {
+                log.warn("느린 쿼리 {}ms [{} {}] {} bindings={}",
+                        elapsed / 1_000_000, operation, tag, jpql.get(), bindings.get());
+            }
+        }
+    }
+
+    String fingerprint(String jpql) {
+        String fingerprint = fingerprints.get(jpql);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        if (fingerprints.size() >= maxFingerprints) {
+            return OTHER;
+        }
+        return fingerprints.computeIfAbsent(jpql, key -> {
+            String created = String.format("%08x", key.hashCode());
+            log.info("쿼리 지문 {} = {}", created, key);
+            return created;
+        });
+    }
+
+}
@@ -2,9 +2,12 @@ package study.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.graph.GraphSemantic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -18,7 +21,12 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -33,6 +41,11 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private PageCounter pageCounter;
+    private ParallelCountExecutor parallelCountExecutor;
+    private QueryResultCache queryResultCache;
+    private ChunkStreamer chunkStreamer;
+    private ChunkWorkerPool chunkWorkerPool;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
@@ -47,13 +60,37 @@ public abstract class Querydsl4RepositorySupport {
         this.entityManager = entityManager;
         this.querydsl = new Querydsl(entityManager, new
                 PathBuilder<>(path.getType(), path.getMetadata()));
-        this.queryFactory = new JPAQueryFactory(entityManager);
+        if (this.queryFactory == null) {
+            this.queryFactory = new JPAQueryFactory(entityManager);
+        }
+        this.pageCounter = new PageCounter(entityManager);
+        this.chunkStreamer = new ChunkStreamer(entityManager);
+    }
+    /**
+     * 등록된 JPAQueryFactory 빈(TimedJPAQueryFactory)이 있으면 그것을 사용한다.
+     */
+    @Autowired(required = false)
+    public void setQueryFactory(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+    @Autowired(required = false)
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+    @Autowired(required = false)
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+    @Autowired(required = false)
+    public void setChunkWorkerPool(ChunkWorkerPool chunkWorkerPool) {
+        this.chunkWorkerPool = chunkWorkerPool;
     }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(pageCounter, "PageCounter must not be null!");
     }
     protected JPAQueryFactory getQueryFactory() {
         return queryFactory;
@@ -70,6 +107,58 @@ public abstract class Querydsl4RepositorySupport {
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
         return getQueryFactory().selectFrom(from);
     }
+    /**
+     * 읽기 전용 엔티티 조회 (스냅샷, dirty checking, 쿼리 전 자동 flush 없음)
+     */
+    protected <T> JPAQuery<T> selectFromReadOnly(EntityPath<T> from) {
+        return ReadOnlyQuery.readOnly(selectFrom(from));
+    }
+    /**
+     * 결과 캐시를 사용하는 fetch (QueryResultCache)
+     * 같은 쿼리(조건 값, offset/limit 포함)는 참조하는 테이블에 쓰기가 일어나기 전까지 DB 를 조회하지 않는다.
+     * 반환된 목록은 변경할 수 없고, QueryResultCache 가 없으면 그냥 fetch 한다.
+     */
+    protected <T> List<T> fetchCached(JPAQuery<T> query) {
+        if (queryResultCache == null) {
+            return query.fetch();
+        }
+        return queryResultCache.fetch(query);
+    }
+    /**
+     * 결과를 forward-only 커서로 읽어서 chunkSize 건씩 consumer 에 넘긴다. (ChunkStreamer)
+     * 처리한 청크의 엔티티는 영속성 컨텍스트에서 분리되므로 전체를 fetch 하거나 offset 으로 페이징하지 않고도 힙 사용량이 일정하다.
+     * 커서를 여는 동안 커넥션이 필요하므로 트랜잭션 안에서 호출한다.
+     *
+     * @return 처리한 건수
+     */
+    protected <T> long streamAll(JPAQuery<T> query, int chunkSize, Consumer<List<T>> consumer) {
+        return chunkStreamer.stream(query, chunkSize, consumer);
+    }
+    /**
+     * streamAll 의 병렬 버전. 청크를 읽는 것은 호출한 스레드, worker 는 ChunkWorkerPool 에서 동시에 실행한다.
+     * worker 에는 분리된 엔티티가 넘어가므로 지연 로딩 없이 처리할 수 있어야 한다.
+     * sink 는 호출한 스레드에서 ordered 면 청크 순서대로, 아니면 worker 가 끝난 순서대로 호출된다.
+     * ChunkWorkerPool 이 없으면 호출한 스레드에서 순서대로 실행한다.
+     *
+     * @return 처리한 건수
+     */
+    protected <T, R> long streamAll(JPAQuery<T> query, int chunkSize, boolean ordered,
+                                    Function<List<T>, R> worker, Consumer<R> sink) {
+        if (chunkWorkerPool == null) {
+            return chunkStreamer.stream(query, chunkSize, chunk -> sink.accept(worker.apply(chunk)));
+        }
+        return chunkStreamer.stream(query, chunkSize, chunkWorkerPool.getExecutor(), chunkWorkerPool.getMaxInFlight(),
+                ordered, worker, sink);
+    }
+    /**
+     * 이름 있는 엔티티 그래프(@NamedEntityGraph)를 페치 그래프로 적용한 조회
+     * 그래프에 포함된 연관관계는 페치 조인으로, 나머지는 매핑대로(LAZY) 조회한다.
+     * 그래프는 조회 결과 엔티티에 적용되므로 count 쿼리에는 사용하지 않는다.
+     */
+    protected <T> JPAQuery<T> selectFrom(EntityPath<T> from, String entityGraphName) {
+        return selectFrom(from)
+                .setHint(GraphSemantic.FETCH.getJpaHintName(), getEntityManager().getEntityGraph(entityGraphName));
+    }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
@@ -88,4 +177,68 @@ public abstract class Querydsl4RepositorySupport {
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
+    protected <T> CountedPage<T> applyPagination(Pageable pageable,
+                                                 Function<JPAQueryFactory, JPAQuery> contentQuery, CountStrategy countStrategy) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaQuery.clone()).fetch();
+        return pageCounter.getPage(content, pageable, jpaQuery, countStrategy);
+    }
+    protected <T> CountedPage<T> applyPagination(Pageable pageable,
+                                                 Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery, CountStrategy countStrategy) {
+        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaContentQuery).fetch();
+        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        return pageCounter.getPage(content, pageable, countResult, countStrategy);
+    }
+    /**
+     * 2단계 페이징 (deferred join)
+     * 1단계: idQuery 로 필터와 정렬을 적용해서 페이지에 해당하는 id 만 조회 (조인 없이 인덱스만으로 가능한 경우가 많다)
+     * 2단계: rowQuery 로 해당 id 의 행만 조회한 뒤 1단계 순서대로 다시 정렬
+     * offset 이 클 때 버려지는 앞쪽 로우들을 조인하지 않아도 된다.
+     * 정렬 마지막에 idQuery 의 select 대상(id)을 추가해서 순서를 고정하고, count 는 idQuery 로 구한다.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected <T, ID> Page<T> applyPaginationByIds(Pageable pageable,
+                                                   Function<JPAQueryFactory, JPAQuery<ID>> idQuery,
+                                                   BiFunction<JPAQueryFactory, List<ID>, JPAQuery<T>> rowQuery,
+                                                   Function<T, ID> idOf) {
+        JPAQuery<ID> jpaIdQuery = idQuery.apply(getQueryFactory());
+        getQuerydsl().applyPagination(pageable, jpaIdQuery);
+        jpaIdQuery.orderBy(new OrderSpecifier(Order.ASC, jpaIdQuery.getMetadata().getProjection()));
+        List<ID> ids = jpaIdQuery.fetch();
+
+        List<T> content = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            Map<ID, T> rows = new HashMap<>();
+            for (T row : rowQuery.apply(getQueryFactory(), ids).fetch()) {
+                rows.put(idOf.apply(row), row);
+            }
+            for (ID id : ids) {
+                T row = rows.get(id);
+                if (row != null) {
+                    content.add(row);
+                }
+            }
+        }
+        JPAQuery<ID> countQuery = idQuery.apply(getQueryFactory());
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+    }
+    /**
+     * 컨텐츠 쿼리와 count 쿼리를 별도 커넥션에서 동시에 실행
+     * ParallelCountExecutor 가 없으면 순차 실행한다.
+     */
+    protected <T> Page<T> applyPaginationParallel(Pageable pageable,
+                                                  Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        if (parallelCountExecutor == null) {
+            return applyPagination(pageable, contentQuery, countQuery);
+        }
+        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        getQuerydsl().applyPagination(pageable, jpaContentQuery);
+        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        return parallelCountExecutor.getPage(jpaContentQuery, pageable, countResult);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.QueryHints;
+
+/**
+ * 엔티티 조회 쿼리를 Hibernate 읽기 전용 모드로 실행
+ *
+ * 조회한 엔티티의 스냅샷(dirty checking 용 복사본)을 만들지 않고 flush 대상에서도 빠지므로,
+ * 많은 엔티티를 읽기만 할 때 힙 사용량과 flush 비용이 줄어든다. (변경해도 DB 에 반영되지 않는다)
+ * FlushMode.MANUAL 이므로 쿼리 전에 영속성 컨텍스트의 변경 내용을 자동 flush 하지 않는다.
+ */
+public final class ReadOnlyQuery {
+
+    private ReadOnlyQuery() {
+    }
+
+    public static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+        return query
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+}
@@ -0,0 +1,41 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import study.querydsl.datasource.ReplicaRoute;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.function.Function;
+
+/**
+ * 스프링 트랜잭션 밖에서 별도 EntityManager(별도 커넥션, 읽기 전용 트랜잭션)로 조회한다. (ParallelCountExecutor, PartitionedScanner)
+ * 커넥션은 ReplicaRoute 로 레플리카를 지정해서 얻고, 트랜잭션은 항상 롤백한다.
+ */
+@Component
+public class ReplicaReader {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public ReplicaReader(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public <T> T read(ReplicaRoute route, Function<EntityManager, T> work) {
+        return route.call(() -> {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                entityManager.unwrap(Session.class).setDefaultReadOnly(true);
+                entityManager.getTransaction().begin();
+                try {
+                    return work.apply(entityManager);
+                } finally {
+                    entityManager.getTransaction().rollback();
+                }
+            } finally {
+                entityManager.close();
+            }
+        });
+    }
+
+}
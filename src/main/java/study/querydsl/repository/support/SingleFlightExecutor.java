@@ -0,0 +1,162 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키의 조회가 동시에 들어오면 하나만 실행하고 나머지는 그 결과를 기다려서 함께 사용한다. (single-flight)
+ * result-ttl 을 주면 끝난 결과도 잠깐 재사용하고, member/team 테이블에 쓰기가 일어나면 비운다.
+ *
+ * 조회는 읽기 전용 트랜잭션에서 실행되고 기다리는 쪽은 트랜잭션/커넥션을 잡지 않는다.
+ * 이미 트랜잭션 안에서 호출하면(커밋하지 않은 변경이 보여야 하므로) 공유하지 않고 바로 실행한다.
+ * 결과 객체를 여러 호출자가 함께 사용하므로 결과를 변경하면 안 된다.
+ */
+@Component
+public class SingleFlightExecutor implements MeterBinder {
+
+    private static final Set<String> WATCHED_TABLES = Set.of("member", "team");
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final long resultTtlNanos;
+    private final int maxResults;
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Object, Result> results = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong sharedCount = new AtomicLong();
+    private final AtomicLong cachedCount = new AtomicLong();
+
+    public SingleFlightExecutor(PlatformTransactionManager transactionManager,
+                                TableWriteNotifier tableWriteNotifier,
+                                @Value("${member.single-flight.result-ttl:0ms}") Duration resultTtl,
+                                @Value("${member.single-flight.max-results:1000}") int maxResults) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.resultTtlNanos = resultTtl.toNanos();
+        this.maxResults = maxResults;
+        tableWriteNotifier.addListener(table -> {
+            if (WATCHED_TABLES.contains(table)) {
+                invalidateAll();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+
+        Result result = results.get(key);
+        if (result != null && result.expiresAt - System.nanoTime() > 0) {
+            cachedCount.incrementAndGet();
+            return (T) result.value;
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            sharedCount.incrementAndGet();
+            return (T) join(running);
+        }
+
+        executedCount.incrementAndGet();
+        long loadedGeneration = generation.get();
+        try {
+            T value = readOnlyTransaction.execute(status -> query.get());
+            //조회 중에 무효화 되었다면 이전 값일 수 있으므로 저장하지 않는다
+            if (resultTtlNanos > 0 && loadedGeneration == generation.get()) {
+                store(key, value);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    public long getCachedCount() {
+        return cachedCount.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("member.single-flight.requests", this, SingleFlightExecutor::getExecutedCount)
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("member.single-flight.requests", this, SingleFlightExecutor::getSharedCount)
+                .tag("result", "shared")
+                .register(registry);
+        FunctionCounter.builder("member.single-flight.requests", this, SingleFlightExecutor::getCachedCount)
+                .tag("result", "cached")
+                .register(registry);
+    }
+
+    private void store(Object key, Object value) {
+        long now = System.nanoTime();
+        if (results.size() >= maxResults) {
+            results.values().removeIf(r -> r.expiresAt - now <= 0);
+            if (results.size() >= maxResults) {
+                return;
+            }
+        }
+        results.put(key, new Result(value, now + resultTtlNanos));
+    }
+
+    private static Object join(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Result {
+        private final Object value;
+        private final long expiresAt;
+
+        private Result(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hibernate 가 실행하는 insert/update/delete SQL 을 보고 어떤 테이블에 쓰기가 일어났는지 알려준다.
+ * em.persist 후 flush, Spring Data save, Querydsl 벌크 update/delete 가 모두 이 경로를 지나간다.
+ *
+ * 쓰기 SQL 실행 시점에 한 번, 트랜잭션이 끝난 뒤에 한 번 더 알린다.
+ * (커밋 전에 다른 스레드가 이전 값을 다시 캐시에 올리는 경우를 막기 위해)
+ */
+@Component
+public class TableWriteNotifier implements StatementInspector, HibernatePropertiesCustomizer {
+
+    public interface Listener {
+        void onWrite(String table);
+    }
+
+    private static final Pattern WRITE_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(?:insert\\s+into|update|delete\\s+from|delete)\\s+([\\w.\"`]+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Matcher matcher = WRITE_STATEMENT.matcher(sql);
+        if (matcher.find()) {
+            String table = tableName(matcher.group(1));
+            notifyListeners(table);
+            writtenInCurrentTransaction(table);
+        }
+        return sql;
+    }
+
+    /**
+     * 현재 트랜잭션에서 쓰기가 일어난 테이블 (트랜잭션 밖이거나 쓰기가 없으면 빈 Set)
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> tablesWrittenInCurrentTransaction() {
+        Set<String> tables = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        return tables != null ? Collections.unmodifiableSet(tables) : Set.of();
+    }
+
+    private void writtenInCurrentTransaction(String table) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> tables = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (tables == null) {
+            Set<String> written = new HashSet<>();
+            tables = written;
+            TransactionSynchronizationManager.bindResource(this, written);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TableWriteNotifier.this);
+                    written.forEach(TableWriteNotifier.this::notifyListeners);
+                }
+            });
+        }
+        tables.add(table);
+    }
+
+    private void notifyListeners(String table) {
+        for (Listener listener : listeners) {
+            listener.onWrite(table);
+        }
+    }
+
+    static String tableName(String qualified) {
+        String name = qualified.replace("\"", "").replace("`", "");
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,52 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TimedJPADeleteClause extends JPADeleteClause {
+
+    private final EntityPath<?> entity;
+    private final QueryTimer queryTimer;
+    private final List<BulkWriteListener> bulkWriteListeners;
+    private final List<Predicate> where = new ArrayList<>();
+
+    public TimedJPADeleteClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryTimer queryTimer) {
+        this(em, entity, templates, queryTimer, List.of());
+    }
+
+    public TimedJPADeleteClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryTimer queryTimer,
+                                List<BulkWriteListener> bulkWriteListeners) {
+        super(em, entity, templates);
+        this.entity = entity;
+        this.queryTimer = queryTimer;
+        this.bulkWriteListeners = bulkWriteListeners;
+    }
+
+    @Override
+    public JPADeleteClause where(Predicate... o) {
+        for (Predicate predicate : o) {
+            if (predicate != null) {
+                where.add(predicate);
+            }
+        }
+        return super.where(o);
+    }
+
+    @Override
+    public long execute() {
+        Runnable afterExecute = BulkWriteListener.beforeExecute(bulkWriteListeners, entity,
+                ExpressionUtils.allOf(where), Map.of());
+        long count = queryTimer.record("execute", this::toString, () -> "", super::execute);
+        afterExecute.run();
+        return count;
+    }
+
+}
@@ -0,0 +1,133 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 실행 시간을 QueryTimer 로 기록하는 JPAQuery
+ * iterate, stream 은 결과를 소비하는 시간이 아니라 쿼리를 실행해서 커서를 얻기까지의 시간이다.
+ * 지문은 처음 실행할 때 한 번 JPQL 로 직렬화해서 구하고, 쿼리 모양(Shape)이 그대로면 다시 실행하거나 복사(clone)해도 재사용한다.
+ * (템플릿 쿼리를 복사해서 파라미터만 바인딩하는 경우 매번 직렬화하지 않는다)
+ */
+public class TimedJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryTimer queryTimer;
+    private Shape shape;
+
+    public TimedJPAQuery(EntityManager em, JPQLTemplates templates, QueryTimer queryTimer) {
+        this(em, templates, new DefaultQueryMetadata(), queryTimer);
+    }
+
+    public TimedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryTimer queryTimer) {
+        super(em, templates, metadata);
+        this.queryTimer = queryTimer;
+    }
+
+    @Override
+    public List<T> fetch() {
+        return queryTimer.record("fetch", this::fingerprint, this::toString, this::bindings, super::fetch);
+    }
+
+    @Override
+    public T fetchOne() {
+        return queryTimer.record("fetchOne", this::fingerprint, this::toString, this::bindings, super::fetchOne);
+    }
+
+    @Override
+    public long fetchCount() {
+        return queryTimer.record("fetchCount", this::fingerprint, this::toString, this::bindings, super::fetchCount);
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        return queryTimer.record("fetchResults", this::fingerprint, this::toString, this::bindings, super::fetchResults);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate() {
+        return queryTimer.record("iterate", this::fingerprint, this::toString, this::bindings, super::iterate);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return queryTimer.record("stream", this::fingerprint, this::toString, this::bindings, super::stream);
+    }
+
+    @Override
+    public TimedJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        TimedJPAQuery<T> q = new TimedJPAQuery<>(entityManager, templates, getMetadata().clone(), queryTimer);
+        q.clone(this);
+        if (templates == getTemplates()) {
+            q.shape = shape;
+        }
+        return q;
+    }
+
+    private String fingerprint() {
+        Shape current = shape;
+        if (current == null || !current.matches(getMetadata())) {
+            current = new Shape(getMetadata(), queryTimer.fingerprint(toString()));
+            shape = current;
+        }
+        return current.fingerprint;
+    }
+
+    private Object bindings() {
+        return "constants=" + serialize(false).getConstants() + " params=" + getMetadata().getParams();
+    }
+
+    /**
+     * 지문을 구할 때의 메타데이터 구성 요소 (참조 비교)
+     * where, join, order by 를 추가하면 새 객체가 들어가므로 달라지고, 파라미터 바인딩, offset/limit 은 JPQL 이 아니므로 같다.
+     */
+    private static final class Shape {
+        private static final Object SECTION = new Object();
+
+        private final Object[] parts;
+        private final String fingerprint;
+
+        private Shape(QueryMetadata metadata, String fingerprint) {
+            this.parts = parts(metadata);
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean matches(QueryMetadata metadata) {
+            Object[] current = parts(metadata);
+            if (current.length != parts.length) {
+                return false;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (current[i] != parts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Object[] parts(QueryMetadata metadata) {
+            List<Object> parts = new ArrayList<>();
+            parts.add(metadata.getProjection());
+            parts.add(metadata.getWhere());
+            parts.add(metadata.getHaving());
+            parts.add(metadata.isDistinct() ? Boolean.TRUE : Boolean.FALSE);
+            parts.addAll(metadata.getJoins());
+            parts.add(SECTION);
+            parts.addAll(metadata.getGroupBy());
+            parts.add(SECTION);
+            parts.addAll(metadata.getOrderBy());
+            parts.add(SECTION);
+            parts.addAll(metadata.getFlags());
+            return parts.toArray();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 만든 쿼리의 fetch, fetchOne, fetchCount, fetchResults, iterate, stream, execute 실행 시간을 QueryTimer 로 기록하는 JPAQueryFactory
+ * select, selectFrom, from ... 은 모두 query() 를 거치므로 query(), update(), delete() 만 바꾸면 된다.
+ * clone() 한 쿼리도 측정 대상으로 남는다. (MemberSearchQueryTemplate)
+ * update(), delete() 로 만든 벌크 연산은 실행 전후에 BulkWriteListener 를 호출한다.
+ */
+public class TimedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager entityManager;
+    private final JPQLTemplates templates;
+    private final QueryTimer queryTimer;
+    private final List<BulkWriteListener> bulkWriteListeners;
+
+    public TimedJPAQueryFactory(EntityManager entityManager, QueryTimer queryTimer) {
+        this(entityManager, queryTimer, List.of());
+    }
+
+    public TimedJPAQueryFactory(EntityManager entityManager, QueryTimer queryTimer, List<BulkWriteListener> bulkWriteListeners) {
+        this(JPAProvider.getTemplates(entityManager), entityManager, queryTimer, bulkWriteListeners);
+    }
+
+    public TimedJPAQueryFactory(JPQLTemplates templates, EntityManager entityManager, QueryTimer queryTimer,
+                                List<BulkWriteListener> bulkWriteListeners) {
+        super(templates, entityManager);
+        this.entityManager = entityManager;
+        this.templates = templates;
+        this.queryTimer = queryTimer;
+        this.bulkWriteListeners = List.copyOf(bulkWriteListeners);
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new TimedJPAQuery<Void>(entityManager, templates, queryTimer);
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new TimedJPAUpdateClause(entityManager, path, templates, queryTimer, bulkWriteListeners);
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new TimedJPADeleteClause(entityManager, path, templates, queryTimer, bulkWriteListeners);
+    }
+
+}
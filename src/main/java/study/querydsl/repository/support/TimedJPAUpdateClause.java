@@ -0,0 +1,90 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Null;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 실행 시간을 QueryTimer 로 기록하고, 실행 전후에 BulkWriteListener 를 호출한다.
+ * (where 조건과 set 대상 경로, 값을 리스너에 넘기기 위해 따로 기억한다)
+ */
+public class TimedJPAUpdateClause extends JPAUpdateClause {
+
+    private final EntityPath<?> entity;
+    private final QueryTimer queryTimer;
+    private final List<BulkWriteListener> bulkWriteListeners;
+    private final List<Predicate> where = new ArrayList<>();
+    private final Map<Path<?>, Expression<?>> updates = new LinkedHashMap<>();
+
+    public TimedJPAUpdateClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryTimer queryTimer) {
+        this(em, entity, templates, queryTimer, List.of());
+    }
+
+    public TimedJPAUpdateClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryTimer queryTimer,
+                                List<BulkWriteListener> bulkWriteListeners) {
+        super(em, entity, templates);
+        this.entity = entity;
+        this.queryTimer = queryTimer;
+        this.bulkWriteListeners = bulkWriteListeners;
+    }
+
+    @Override
+    public <T> JPAUpdateClause set(Path<T> path, T value) {
+        updates.put(path, value != null ? ConstantImpl.create(value) : Null.CONSTANT);
+        return super.set(path, value);
+    }
+
+    @Override
+    public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+        updates.put(path, expression != null ? expression : Null.CONSTANT);
+        return super.set(path, expression);
+    }
+
+    @Override
+    public <T> JPAUpdateClause setNull(Path<T> path) {
+        updates.put(path, Null.CONSTANT);
+        return super.setNull(path);
+    }
+
+    @Override
+    public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+        for (int i = 0; i < paths.size(); i++) {
+            Object value = values.get(i);
+            updates.put(paths.get(i), value instanceof Expression ? (Expression<?>) value
+                    : value != null ? ConstantImpl.create(value) : Null.CONSTANT);
+        }
+        return super.set(paths, values);
+    }
+
+    @Override
+    public JPAUpdateClause where(Predicate... o) {
+        for (Predicate predicate : o) {
+            if (predicate != null) {
+                where.add(predicate);
+            }
+        }
+        return super.where(o);
+    }
+
+    @Override
+    public long execute() {
+        Runnable afterExecute = BulkWriteListener.beforeExecute(bulkWriteListeners, entity,
+                ExpressionUtils.allOf(where), updates);
+        long count = queryTimer.record("execute", this::toString, () -> "", super::execute);
+        afterExecute.run();
+        return count;
+    }
+
+}
@@ -0,0 +1,54 @@
+package study.querydsl;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋한 데이터로 확인하는 테스트용 (@Transactional 테스트는 롤백되는 트랜잭션 하나 안에서 실행되므로
+ * 다른 스레드, 별도 커넥션, 커밋 직전/직후 동작은 확인할 수 없다)
+ * 테스트마다 회원 이름, 팀 이름에 접두사를 붙여서 넣고, 끝나면 deleteByPrefix 로 지운다.
+ */
+@Component
+public class CommittedData {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    public CommittedData(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 새 트랜잭션에서 실행하고 커밋
+     */
+    public void inTransaction(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> work.run());
+    }
+
+    /**
+     * 새 트랜잭션에서 실행하고 롤백
+     */
+    public void inRolledBackTransaction(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> {
+            work.run();
+            status.setRollbackOnly();
+        });
+    }
+
+    /**
+     * 이름이 prefix 로 시작하는 회원, 팀을 지운다 (회원 먼저)
+     */
+    public void deleteByPrefix(String prefix) {
+        inTransaction(() -> {
+            queryFactory.delete(member).where(member.username.startsWith(prefix)).execute();
+            queryFactory.delete(team).where(team.name.startsWith(prefix)).execute();
+        });
+    }
+
+}
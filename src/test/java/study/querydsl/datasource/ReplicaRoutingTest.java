@@ -0,0 +1,159 @@
+package study.querydsl.datasource;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.CommittedData;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.ParallelCountExecutor;
+import study.querydsl.repository.support.PartitionedScanner;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * H2 메모리 DB 두 개를 프라이머리, 레플리카로 사용한다.
+ * 레플리카에는 프라이머리 스키마만 복사하고 서로 다른 데이터를 넣어서 어느 쪽에서 조회했는지 구분한다.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "member.datasource.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "member.datasource.lag-query=select max(lag_seconds) from replica_lag",
+        "member.datasource.max-lag=5s"
+})
+class ReplicaRoutingTest {
+
+    @Autowired
+    ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    ParallelCountExecutor parallelCountExecutor;
+
+    @Autowired
+    PartitionedScanner partitionedScanner;
+
+    @Autowired
+    CommittedData committedData;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void before(){
+        ReplicaRoutingDataSource routingDataSource = replicaLagMonitor.getRoutingDataSource();
+        primary = new JdbcTemplate((DataSource) routingDataSource.getResolvedDataSources().get(ReplicaRoutingDataSource.PRIMARY));
+        replica = new JdbcTemplate((DataSource) routingDataSource.getResolvedDataSources().get("replica-0"));
+
+        replica.execute("drop all objects");
+        for (String ddl : primary.queryForList("script nodata", String.class)) {
+            if (!ddl.startsWith("--") && !ddl.startsWith("CREATE USER")) {
+                replica.execute(ddl);
+            }
+        }
+        replica.execute("create table replica_lag(lag_seconds bigint)");
+        replica.update("insert into replica_lag values (0)");
+        replica.update("insert into member(member_id, username, age) values (1, 'replicaMember', 10)");
+        replica.update("insert into member(member_id, username, age) values (2, 'replicaMember2', 20)");
+
+        committedData.inTransaction(() ->
+                memberJpaRepository.save(new Member("primaryMember", 10)));
+
+        replicaLagMonitor.check();
+    }
+
+    @AfterEach
+    public void after(){
+        primary.update("delete from member");
+    }
+
+    @Test
+    public void readOnlyToReplica(){
+        Assertions.assertThat(replicaLagMonitor.getRoutingDataSource().getAvailableReplicas()).containsExactly("replica-0");
+
+        Assertions.assertThat(memberJpaRepository.search(condition("replicaMember"))).hasSize(1);
+        Assertions.assertThat(memberJpaRepository.search(condition("primaryMember"))).isEmpty();
+        Assertions.assertThat(memberQueryRepository.search(condition("replicaMember"))).hasSize(1);
+        Assertions.assertThat(memberRepository.search(condition("replicaMember"))).hasSize(1);
+    }
+
+    @Test
+    public void writeToPrimary(){
+        committedData.inTransaction(() ->
+                memberJpaRepository.save(new Member("written", 20)));
+
+        Assertions.assertThat(count(primary, "written")).isEqualTo(1);
+        Assertions.assertThat(count(replica, "written")).isZero();
+    }
+
+    @Test
+    public void lagFallbackToPrimary(){
+        replica.update("update replica_lag set lag_seconds = 60");
+        replicaLagMonitor.check();
+
+        Assertions.assertThat(replicaLagMonitor.getRoutingDataSource().getAvailableReplicas()).isEmpty();
+        Assertions.assertThat(memberJpaRepository.search(condition("primaryMember"))).hasSize(1);
+    }
+
+    @Test
+    public void parallelCountOnSameReplica(){
+        //트랜잭션 밖에서 호출해도 컨텐츠와 count 를 같은 레플리카에서 조회한다
+        Page<Member> page = parallelCountExecutor.getPage(queryFactory
+                        .selectFrom(member)
+                        .where(member.username.startsWith("replica"))
+                        .orderBy(member.id.asc())
+                        .limit(1),
+                PageRequest.of(0, 1),
+                queryFactory.selectFrom(member).where(member.username.startsWith("replica")));
+
+        Assertions.assertThat(page.getContent()).extracting("username").containsExactly("replicaMember");
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    public void partitionedScanOnReplica(){
+        List<String> usernames;
+        try (Stream<Member> stream = partitionedScanner.scan(queryFactory.selectFrom(member), member.id, 2)) {
+            usernames = stream.map(Member::getUsername).collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(usernames).containsExactlyInAnyOrder("replicaMember", "replicaMember2");
+    }
+
+    private MemberSearchCondition condition(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        return condition;
+    }
+
+    private long count(JdbcTemplate jdbcTemplate, String username) {
+        return jdbcTemplate.queryForObject("select count(*) from member where username = ?", Long.class, username);
+    }
+
+}
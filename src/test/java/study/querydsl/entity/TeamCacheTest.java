@@ -0,0 +1,103 @@
+package study.querydsl.entity;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 2차 캐시는 트랜잭션(영속성 컨텍스트)을 넘어서 동작하므로 트랜잭션을 나눠서 확인한다.
+ */
+@SpringBootTest
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    CommittedData committedData;
+
+    Statistics statistics;
+    Long teamId;
+    Long memberId;
+
+    @BeforeEach
+    public void before(){
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        committedData.inTransaction(() -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            Member member = new Member("cacheMember", 10, team);
+            em.persist(member);
+            teamId = team.getId();
+            memberId = member.getId();
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.inTransaction(() -> {
+            em.remove(em.find(Member.class, memberId));
+            em.remove(em.find(Team.class, teamId));
+        });
+    }
+
+    @Test
+    public void findTeamFromCache(){
+        //워밍업
+        committedData.inTransaction(() -> em.find(Team.class, teamId));
+
+        long before = statistics.getPrepareStatementCount();
+        committedData.inTransaction(() -> {
+            Team team = em.find(Team.class, teamId);
+            Assertions.assertThat(team.getName()).isEqualTo("cacheTeam");
+        });
+
+        Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(before);
+        Assertions.assertThat(statistics.getDomainDataRegionStatistics("team").getHitCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void lazyTeamFromCache(){
+        committedData.inTransaction(() -> em.find(Member.class, memberId).getTeam().getName());
+
+        committedData.inTransaction(() -> {
+            Member member = em.find(Member.class, memberId);
+
+            //Member 는 캐시 대상이 아니므로 여기부터 센다
+            long before = statistics.getPrepareStatementCount();
+            Assertions.assertThat(member.getTeam().getName()).isEqualTo("cacheTeam");
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(before);
+        });
+    }
+
+    @Test
+    public void membersCollectionNotCached(){
+        committedData.inTransaction(() -> em.find(Team.class, teamId).getMembers().size());
+
+        committedData.inTransaction(() -> {
+            Team team = em.find(Team.class, teamId);
+
+            //캐시에서 가져온 팀의 members 는 회원 수와 상관없이 한 번에 조회한다 (회원마다 조회하지 않음)
+            long before = statistics.getPrepareStatementCount();
+            Assertions.assertThat(team.getMembers()).extracting("username").containsExactly("cacheMember");
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(before + 1);
+        });
+
+        Assertions.assertThat(statistics.getSecondLevelCacheRegionNames()).doesNotContain("team.members");
+    }
+
+}
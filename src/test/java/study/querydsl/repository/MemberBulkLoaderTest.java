@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+import study.querydsl.dto.MemberLoadDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 로더가 청크마다 직접 트랜잭션을 열고 커밋한다.
+ */
+@SpringBootTest
+class MemberBulkLoaderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberBulkLoader memberBulkLoader;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        //이미 있는 팀은 새로 만들지 않는다
+        committedData.inTransaction(() -> em.persist(new Team("loadTeamA")));
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("load");
+    }
+
+    @Test
+    public void load(){
+        long loaded = memberBulkLoader.load(IntStream.range(0, 5)
+                .mapToObj(i -> new MemberLoadDto("load" + i, i * 10, i % 2 == 0 ? "loadTeamA" : "loadTeamB")), 2);
+
+        Assertions.assertThat(loaded).isEqualTo(5);
+        Assertions.assertThat(queryFactory.selectFrom(team).where(team.name.startsWith("loadTeam")).fetch())
+                .extracting("name")
+                .containsExactlyInAnyOrder("loadTeamA", "loadTeamB");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("loadTeamA");
+        List<MemberTeamDto> result = memberJpaRepository.search(condition);
+        Assertions.assertThat(result).extracting("username").containsExactlyInAnyOrder("load0", "load2", "load4");
+    }
+
+    @Test
+    public void rejectsActiveTransaction(){
+        Assertions.assertThatThrownBy(() -> committedData.inTransaction(() ->
+                        memberBulkLoader.load(Stream.of(new MemberLoadDto("load0", 10, null)), 2)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+}
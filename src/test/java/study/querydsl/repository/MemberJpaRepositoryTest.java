@@ -13,6 +13,7 @@ import study.querydsl.repository.MemberJpaRepository;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -113,4 +114,58 @@ class MemberJpaRepositoryTest {
     }
 
 
-}
\ No newline at end of file
+    @Test
+    public void searchForEach(){
+        Team teamA = new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        List<String> usernames = new ArrayList<>();
+        long count = memberJpaRepository.searchForEach(condition, 1, dto -> usernames.add(dto.getUsername()));
+
+        Assertions.assertThat(count).isEqualTo(2);
+        Assertions.assertThat(usernames).containsExactly("member1", "member2");
+    }
+
+    @Test
+    public void findAllReadOnly(){
+        Member member=new Member("member1", 10);
+        memberJpaRepository.save(member);
+        em.flush();
+        em.clear();
+
+        List<Member> result = memberJpaRepository.findAll_QuerydslReadOnly();
+        Assertions.assertThat(result).extracting("username").contains("member1");
+
+        //읽기 전용 엔티티는 변경해도 flush 되지 않는다
+        Member readOnlyMember = result.stream().filter(m -> m.getId().equals(member.getId())).findFirst().get();
+        readOnlyMember.setUsername("changed");
+        em.flush();
+        em.clear();
+
+        Assertions.assertThat(memberJpaRepository.findById(member.getId()).get().getUsername()).isEqualTo("member1");
+    }
+
+    @Test
+    public void forEachStateless(){
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("member2", 20));
+        em.flush();
+
+        List<String> usernames = new ArrayList<>();
+        long count = memberJpaRepository.forEachStateless(10, m -> usernames.add(m.getUsername()));
+
+        Assertions.assertThat(count).isEqualTo(usernames.size());
+        Assertions.assertThat(usernames).contains("member1", "member2");
+    }
+
+}
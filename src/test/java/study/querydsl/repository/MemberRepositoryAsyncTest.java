@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.CommittedData;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.AsyncQueryExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 비동기 조회는 풀 스레드의 별도 트랜잭션에서 실행된다.
+ */
+@SpringBootTest
+class MemberRepositoryAsyncTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedData committedData;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            Team asyncTeam = new Team("asyncTeam");
+            em.persist(asyncTeam);
+            em.persist(new Member("async1", 10, asyncTeam));
+            em.persist(new Member("async2", 20, asyncTeam));
+            em.persist(new Member("async3", 30, asyncTeam));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("async");
+    }
+
+    @Test
+    public void searchPageAsync() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("asyncTeam");
+
+        long budgetChecks = budgetChecks("MemberRepositoryImpl.searchPageComplex");
+        Page<MemberTeamDto> result = memberRepository.searchPageAsync(condition, PageRequest.of(0, 2))
+                .get(10, TimeUnit.SECONDS);
+
+        Assertions.assertThat(result.getContent()).extracting("username").containsExactly("async1", "async2");
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(3);
+        Assertions.assertThat(memberRepository.searchAsync(condition).get(10, TimeUnit.SECONDS)).hasSize(3);
+        //비동기 스레드에서도 프록시를 거쳐서 쿼리 예산을 검사한다
+        Assertions.assertThat(budgetChecks("MemberRepositoryImpl.searchPageComplex")).isEqualTo(budgetChecks + 1);
+    }
+
+    private long budgetChecks(String method) {
+        DistributionSummary summary = meterRegistry.find("repository.queries").tag("method", method).summary();
+        return summary == null ? 0 : summary.count();
+    }
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        AsyncQueryExecutor executor = new AsyncQueryExecutor(transactionManager, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = executor.submit(() -> await(release));
+            CompletableFuture<Boolean> queued = executor.submit(() -> await(release));
+            CompletableFuture<Boolean> rejected = executor.submit(() -> await(release));
+
+            Assertions.assertThat(rejected).isCompletedExceptionally();
+            Assertions.assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            Assertions.assertThat(running.get(10, TimeUnit.SECONDS)).isTrue();
+            Assertions.assertThat(queued.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            executor.destroy();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,14 +8,24 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.InvalidCursorException;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.PageCounter;
+import study.querydsl.repository.support.QueryCounter;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
+import static study.querydsl.entity.QMember.member;
+
 @SpringBootTest
 @Transactional
 class MemberRepositoryTest {
@@ -26,6 +37,12 @@ class MemberRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QueryCounter queryCounter;
+
     @Test
     public void basicTest(){
         Member member=new Member("member1", 10);
@@ -80,4 +97,140 @@ class MemberRepositoryTest {
 
 
 
-}
\ No newline at end of file
+    @Test
+    public void searchByCursorTest(){
+        Team teamA = new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 40, teamA));
+        em.persist(new Member("member2", 30, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 10, teamB));
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+
+        CursorSlice<MemberTeamDto> first = memberRepository.searchByCursor(condition, MemberCursor.first(MemberCursor.SortKey.AGE), 3);
+        Assertions.assertThat(first.getContent()).extracting("username").containsExactly("member4", "member2", "member3");
+        Assertions.assertThat(first.isHasNext()).isTrue();
+
+        CursorSlice<MemberTeamDto> second = memberRepository.searchByCursor(condition, MemberCursor.decode(first.getNextCursor()), 3);
+        Assertions.assertThat(second.getContent()).extracting("username").containsExactly("member1");
+        Assertions.assertThat(second.isHasNext()).isFalse();
+        Assertions.assertThat(second.getNextCursor()).isNull();
+
+        Assertions.assertThatThrownBy(() -> MemberCursor.decode("not-a-cursor"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    public void searchByCursorNullUsernameTest(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member(null, 10, teamA));
+        em.persist(new Member("member1", 20, teamA));
+        em.persist(new Member(null, 30, teamA));
+        em.persist(new Member("null", 40, teamA));
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+
+        //한 건씩 넘기면서 null username 도 빠짐없이 정렬 순서대로 (null 먼저) 조회된다
+        List<Integer> ages = new ArrayList<>();
+        MemberCursor cursor = MemberCursor.first(MemberCursor.SortKey.USERNAME);
+        while (cursor != null) {
+            CursorSlice<MemberTeamDto> slice = memberRepository.searchByCursor(condition, cursor, 1);
+            slice.getContent().forEach(dto -> ages.add(dto.getAge()));
+            cursor = slice.isHasNext() ? MemberCursor.decode(slice.getNextCursor()) : null;
+        }
+
+        Assertions.assertThat(ages).containsExactly(10, 30, 20, 40);
+    }
+
+    @Test
+    public void searchPageComplexCountStrategyTest(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+        condition.setAgeGoe(1);
+
+        em.flush();
+        QueryCounter.Scope scope = queryCounter.start();
+        CountedPage<MemberTeamDto> capped = memberRepository.searchPageComplex(condition, PageRequest.of(0, 3), CountStrategy.CAPPED);
+        scope.close();
+        //컨텐츠, 상한 다음 행 확인, count (@QueryBudget(3) 안)
+        Assertions.assertThat(scope.getCount()).isEqualTo(3);
+        Assertions.assertThat(capped.getTotalElements()).isEqualTo(4);
+        Assertions.assertThat(capped.getCountStrategy()).isEqualTo(CountStrategy.CAPPED);
+        Assertions.assertThat(capped.isCapped()).isFalse();
+
+        //마지막 페이지는 count 쿼리 없이 구할 수 있으므로 EXACT
+        CountedPage<MemberTeamDto> lastPage = memberRepository.searchPageComplex(condition, PageRequest.of(1, 3), CountStrategy.CAPPED);
+        Assertions.assertThat(lastPage.getTotalElements()).isEqualTo(4);
+        Assertions.assertThat(lastPage.getCountStrategy()).isEqualTo(CountStrategy.EXACT);
+
+        //조건이 있으면 테이블 통계를 쓸 수 없으므로 CAPPED 로 대체
+        CountedPage<MemberTeamDto> estimated = memberRepository.searchPageComplex(condition, PageRequest.of(0, 3), CountStrategy.ESTIMATED);
+        Assertions.assertThat(estimated.getCountStrategy()).isEqualTo(CountStrategy.CAPPED);
+
+        //상한을 넘으면 상한까지만
+        CountedPage<String> overCap = new PageCounter(em, 2).getPage(List.of("member1"), PageRequest.of(0, 1),
+                queryFactory.selectFrom(member).where(member.age.goe(1)), CountStrategy.CAPPED);
+        Assertions.assertThat(overCap.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat(overCap.isCapped()).isTrue();
+    }
+
+    @Test
+    public void searchPageParallelTest(){
+        Team teamA = new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        //쓰기 트랜잭션 안이므로 순차 실행되어 커밋 전 데이터도 보인다
+        Page<MemberTeamDto> result = memberRepository.searchPageParallel(condition, PageRequest.of(0, 1));
+
+        Assertions.assertThat(result.getContent()).extracting("username").containsExactly("member3");
+        Assertions.assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    public void searchPageComplexWithTeamNameTest(){
+        Team teamA = new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition=new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        //같은 조건 조합의 템플릿을 다른 값으로 다시 사용해도 값이 섞이지 않는다
+        Page<MemberTeamDto> teamAPage = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> teamBPage = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+
+        Assertions.assertThat(teamAPage.getContent()).extracting("username").containsExactly("member1");
+        Assertions.assertThat(teamAPage.getTotalElements()).isEqualTo(2);
+        Assertions.assertThat(teamBPage.getContent()).extracting("username").containsExactly("member3");
+        Assertions.assertThat(teamBPage.getTotalElements()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+
+/**
+ * 16개 검색 조건 조합의 실제 SQL 을 H2 EXPLAIN 으로 확인한다.
+ * 조건이 하나라도 있으면 member, team 모두 인덱스로 찾아야 한다. (tableScan 없음)
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.use_sql_comments=false")
+@Transactional
+class MemberSearchIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSearchQueryTemplate searchQueryTemplate;
+
+    @Autowired
+    MemberSearchIndexVerifier memberSearchIndexVerifier;
+
+    @Autowired
+    LastSql lastSql;
+
+    @BeforeEach
+    public void before(){
+        Team[] teams = new Team[10];
+        for (int i = 0; i < teams.length; i++) {
+            teams[i] = new Team("team" + i);
+            em.persist(teams[i]);
+        }
+        for (int i = 0; i < 200; i++) {
+            em.persist(new Member("member" + i, i % 100, teams[i % teams.length]));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void explainAllCombinations(){
+        for (int mask = 1; mask < MemberSearchPredicates.COMBINATIONS; mask++) {
+            searchQueryTemplate.content(condition(mask)).fetch();
+            String plan = String.valueOf(em.createNativeQuery("explain " + lastSql.get()).getSingleResult());
+
+            Assertions.assertThat(plan)
+                    .as("조건 %s 실행 계획%n%s", MemberSearchPredicates.filterColumns(mask), plan)
+                    .doesNotContainIgnoringCase("tableScan");
+        }
+    }
+
+    @Test
+    public void verifier() throws SQLException {
+        Assertions.assertThat(memberSearchIndexVerifier.uncoveredCombinations()).isEmpty();
+    }
+
+    private MemberSearchCondition condition(int mask) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((mask & MemberSearchPredicates.USERNAME) != 0) {
+            condition.setUsername("member1");
+        }
+        if ((mask & MemberSearchPredicates.TEAM_NAME) != 0) {
+            condition.setTeamName("team1");
+        }
+        if ((mask & MemberSearchPredicates.AGE_GOE) != 0) {
+            condition.setAgeGoe(10);
+        }
+        if ((mask & MemberSearchPredicates.AGE_LOE) != 0) {
+            condition.setAgeLoe(20);
+        }
+        return condition;
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        LastSql lastSql() {
+            return new LastSql();
+        }
+    }
+
+    /**
+     * 마지막으로 실행된 select (바인딩 값 포함)
+     */
+    static class LastSql extends JdbcEventListener {
+
+        private final ThreadLocal<String> sql = new ThreadLocal<>();
+
+        @Override
+        public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+            sql.set(statementInformation.getSqlWithValues());
+        }
+
+        String get() {
+            return sql.get();
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    QueryCounter queryCounter;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("graphTeamA");
+        Team teamB = new Team("graphTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void searchWithTeam(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(40);
+
+        QueryCounter.Scope scope = queryCounter.start();
+        List<Member> result = memberTestRepository.searchWithTeam(condition);
+
+        Assertions.assertThat(result).hasSize(4);
+        for (Member m : result) {
+            Assertions.assertThat(emf.getPersistenceUnitUtil().isLoaded(m, "team")).isTrue();
+            Assertions.assertThat(m.getTeam().getName()).startsWith("graphTeam");
+        }
+        Assertions.assertThat(scope.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void searchWithTeamByTeamName(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("graphTeamB");
+
+        QueryCounter.Scope scope = queryCounter.start();
+        List<Member> result = memberTestRepository.searchWithTeam(condition);
+
+        Assertions.assertThat(result).extracting("username").containsExactlyInAnyOrder("member3", "member4");
+        for (Member m : result) {
+            Assertions.assertThat(emf.getPersistenceUnitUtil().isLoaded(m, "team")).isTrue();
+            Assertions.assertThat(m.getTeam().getName()).isEqualTo("graphTeamB");
+        }
+        Assertions.assertThat(scope.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void teamMembersBatch(){
+        QueryCounter.Scope scope = queryCounter.start();
+
+        List<Team> teams = queryFactory
+                .selectFrom(team)
+                .where(team.name.startsWith("graphTeam"))
+                .fetch();
+        int memberCount = teams.stream().mapToInt(t -> t.getMembers().size()).sum();
+
+        //팀 조회 1번 + 두 팀의 members 를 in 절로 1번
+        Assertions.assertThat(memberCount).isEqualTo(4);
+        Assertions.assertThat(scope.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void searchPageByIds(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(40);
+
+        Page<MemberTeamDto> first = memberTestRepository.searchPageByIds(condition, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age")));
+        Page<MemberTeamDto> second = memberTestRepository.searchPageByIds(condition, PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "age")));
+
+        Assertions.assertThat(first.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+        Assertions.assertThat(first.getContent()).extracting("teamName").containsExactly("graphTeamB", "graphTeamB", "graphTeamA");
+        Assertions.assertThat(first.getTotalElements()).isEqualTo(4);
+        Assertions.assertThat(second.getContent()).extracting("username").containsExactly("member1");
+    }
+
+    @Test
+    public void searchPageByIdsWithTeamName(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("graphTeamB");
+
+        Page<MemberTeamDto> result = memberTestRepository.searchPageByIds(condition, PageRequest.of(0, 10));
+
+        Assertions.assertThat(result.getContent()).extracting("username").containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void forEachChunk(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(40);
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<Member> processed = new ArrayList<>();
+        long count = memberTestRepository.forEachChunk(condition, 3, chunk -> {
+            //이전 청크의 회원은 이미 영속성 컨텍스트에서 분리되어 있다
+            for (Member m : processed) {
+                Assertions.assertThat(em.contains(m)).isFalse();
+            }
+            chunks.add(chunk.stream().map(Member::getUsername).collect(Collectors.toList()));
+            processed.addAll(chunk);
+        });
+
+        Assertions.assertThat(count).isEqualTo(4);
+        Assertions.assertThat(chunks).containsExactly(
+                List.of("member1", "member2", "member3"),
+                List.of("member4"));
+        for (Member m : processed) {
+            Assertions.assertThat(em.contains(m)).isFalse();
+        }
+    }
+
+    @Test
+    public void forEachChunkByTeamName(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("graphTeamB");
+
+        List<List<String>> chunks = new ArrayList<>();
+        long count = memberTestRepository.forEachChunk(condition, 1,
+                chunk -> chunks.add(chunk.stream().map(Member::getUsername).collect(Collectors.toList())));
+
+        List<String> parallel = new ArrayList<>();
+        long parallelCount = memberTestRepository.forEachChunkParallel(condition, 1, true,
+                chunk -> chunk.get(0).getUsername(), parallel::add);
+
+        Assertions.assertThat(count).isEqualTo(2);
+        Assertions.assertThat(chunks).containsExactly(List.of("member3"), List.of("member4"));
+        Assertions.assertThat(parallelCount).isEqualTo(2);
+        Assertions.assertThat(parallel).containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void forEachChunkParallel(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(40);
+
+        List<String> ordered = new ArrayList<>();
+        List<String> threads = new ArrayList<>();
+        memberTestRepository.forEachChunkParallel(condition, 1, true,
+                chunk -> Thread.currentThread().getName() + ":" + chunk.get(0).getUsername(),
+                result -> {
+                    threads.add(result.substring(0, result.indexOf(':')));
+                    ordered.add(result.substring(result.indexOf(':') + 1));
+                });
+
+        List<Integer> unordered = new ArrayList<>();
+        long count = memberTestRepository.forEachChunkParallel(condition, 1, false,
+                chunk -> chunk.get(0).getAge(), unordered::add);
+
+        Assertions.assertThat(ordered).containsExactly("member1", "member2", "member3", "member4");
+        Assertions.assertThat(threads).allMatch(name -> name.startsWith("chunk-worker-"));
+        Assertions.assertThat(count).isEqualTo(4);
+        Assertions.assertThat(unordered).containsExactlyInAnyOrder(10, 20, 30, 40);
+    }
+
+}
@@ -0,0 +1,257 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.ChunkedBulkExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * 통계는 커밋 직전에 반영되므로 커밋한 결과로 확인한다.
+ */
+@SpringBootTest
+class TeamStatsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Autowired
+    TeamStatsMaintainer teamStatsMaintainer;
+
+    @Autowired
+    ChunkedBulkExecutor chunkedBulkExecutor;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            Team teamA = new Team("statsTeamA");
+            Team teamB = new Team("statsTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("stats1", 10, teamA));
+            em.persist(new Member("stats2", 20, teamA));
+            em.persist(new Member("stats3", 30, teamB));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("stats");
+    }
+
+    @Test
+    public void persist(){
+        assertStats("statsTeamA", 2, 30, 10, 20);
+        assertStats("statsTeamB", 1, 30, 30, 30);
+    }
+
+    @Test
+    public void changeTeamAndAge(){
+        committedData.inTransaction(() -> {
+            Member stats2 = findMember("stats2");
+            stats2.setTeam(findTeam("statsTeamB"));
+            stats2.setAge(25);
+        });
+
+        assertStats("statsTeamA", 1, 10, 10, 10);
+        assertStats("statsTeamB", 2, 55, 25, 30);
+    }
+
+    @Test
+    public void remove(){
+        committedData.inTransaction(() -> em.remove(findMember("stats1")));
+
+        assertStats("statsTeamA", 1, 20, 20, 20);
+    }
+
+    @Test
+    public void rollback(){
+        committedData.inRolledBackTransaction(() -> {
+            em.persist(new Member("stats4", 40, findTeam("statsTeamA")));
+            em.flush();
+        });
+
+        assertStats("statsTeamA", 2, 30, 10, 20);
+    }
+
+    @Test
+    public void bulkUpdate(){
+        committedData.inTransaction(() -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(5))
+                .where(member.username.in("stats1", "stats3"))
+                .execute());
+
+        assertStats("statsTeamA", 2, 35, 15, 20);
+        assertStats("statsTeamB", 1, 35, 35, 35);
+    }
+
+    @Test
+    public void bulkUpdateTeam(){
+        committedData.inTransaction(() -> queryFactory
+                .update(member)
+                .set(member.team, findTeam("statsTeamB"))
+                .where(member.username.eq("stats1"))
+                .execute());
+
+        assertStats("statsTeamA", 1, 20, 20, 20);
+        assertStats("statsTeamB", 2, 40, 10, 30);
+    }
+
+    @Test
+    public void bulkSetAgeAndTeam(){
+        //상수 나이 + 팀 없음으로 바꾸면 이전 팀에서만 빠진다
+        committedData.inTransaction(() -> queryFactory
+                .update(member)
+                .set(member.age, 99)
+                .setNull(member.team)
+                .where(member.username.eq("stats2"))
+                .execute());
+        assertStats("statsTeamA", 1, 10, 10, 10);
+
+        //팀이 없던 회원을 상수 팀으로 옮기면 새 팀에만 더해진다
+        committedData.inTransaction(() -> queryFactory
+                .update(member)
+                .set(member.team, findTeam("statsTeamB"))
+                .where(member.username.eq("stats2"))
+                .execute());
+        assertStats("statsTeamA", 1, 10, 10, 10);
+        assertStats("statsTeamB", 2, 129, 30, 99);
+    }
+
+    @Test
+    public void bulkDelete(){
+        committedData.inTransaction(() -> queryFactory
+                .delete(member)
+                .where(member.username.in("stats2", "stats3"))
+                .execute());
+
+        assertStats("statsTeamA", 1, 10, 10, 10);
+        assertStats("statsTeamB", 0, 0, null, null);
+    }
+
+    @Test
+    public void chunkedBulkUpdate(){
+        //청크(트랜잭션)마다 그 청크의 행만 집계해서 변화량으로 반영한다
+        chunkedBulkExecutor.update(member, member.id, member.username.startsWith("stats"),
+                update -> update.set(member.age, member.age.add(1)), 1, null, null);
+
+        assertStats("statsTeamA", 2, 32, 11, 21);
+        assertStats("statsTeamB", 1, 31, 31, 31);
+
+        chunkedBulkExecutor.delete(member, member.id, member.username.in("stats1", "stats3"), 1, null, null);
+
+        assertStats("statsTeamA", 1, 21, 21, 21);
+        assertStats("statsTeamB", 0, 0, null, null);
+    }
+
+    @Test
+    public void rebuildMatchesIncremental(){
+        committedData.inTransaction(() -> {
+            findMember("stats1").setAge(11);
+            em.persist(new Member("stats4", 40, findTeam("statsTeamB")));
+        });
+        TeamStatsDto incremental = teamStatsRepository.totals();
+
+        teamStatsMaintainer.rebuild();
+
+        Assertions.assertThat(teamStatsRepository.totals()).isEqualTo(incremental);
+        assertStats("statsTeamA", 2, 31, 11, 20);
+        assertStats("statsTeamB", 2, 70, 30, 40);
+    }
+
+    @Test
+    public void concurrentFirstMembers() throws Exception {
+        committedData.inTransaction(() -> em.persist(new Team("statsTeamC")));
+        Long teamId = findTeam("statsTeamC").getId();
+
+        //빈 팀에 동시에 첫 회원을 추가해도 통계 행은 팀을 만들 때 생겼으므로 update 만 한다
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 5; i <= 6; i++) {
+                int age = i * 10;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    committedData.inTransaction(() ->
+                            em.persist(new Member("stats" + age, age, em.getReference(Team.class, teamId))));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertStats("statsTeamC", 2, 110, 50, 60);
+    }
+
+    @Test
+    public void deleteTeam(){
+        TeamStatsDto before = teamStatsRepository.totals();
+        Long teamBId = findTeam("statsTeamB").getId();
+
+        committedData.inTransaction(() -> {
+            queryFactory.update(member).setNull(member.team).where(member.username.eq("stats3")).execute();
+            em.remove(findTeam("statsTeamB"));
+        });
+
+        Assertions.assertThat(teamStatsRepository.findAll()).extracting("teamName").doesNotContain("statsTeamB");
+        Assertions.assertThat(teamStatsRepository.totals().getMemberCount()).isEqualTo(before.getMemberCount() - 1);
+        Assertions.assertThat(queryFactory.selectFrom(teamStats).where(teamStats.teamId.eq(teamBId)).fetch()).isEmpty();
+    }
+
+    private void assertStats(String teamName, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        TeamStatsDto stats = teamStatsRepository.findAll().stream()
+                .filter(dto -> teamName.equals(dto.getTeamName()))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertThat(stats.getMemberCount()).isEqualTo(memberCount);
+        Assertions.assertThat(stats.getAgeSum()).isEqualTo(ageSum);
+        Assertions.assertThat(stats.getAgeAvg()).isEqualTo(memberCount == 0 ? 0 : (double) ageSum / memberCount);
+        Assertions.assertThat(stats.getMinAge()).isEqualTo(minAge);
+        Assertions.assertThat(stats.getMaxAge()).isEqualTo(maxAge);
+    }
+
+    private Member findMember(String username) {
+        return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+    }
+
+    private Team findTeam(String name) {
+        return queryFactory.selectFrom(team).where(team.name.eq(name)).fetchOne();
+    }
+
+}
@@ -0,0 +1,92 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 청크마다 별도 트랜잭션으로 커밋한다.
+ */
+@SpringBootTest
+class ChunkedBulkExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    ChunkedBulkExecutor chunkedBulkExecutor;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            for (int i = 1; i <= 10; i++) {
+                em.persist(new Member("chunk" + i, i * 10));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("chunk");
+    }
+
+    @Test
+    public void chunkedUpdate(){
+        List<ChunkedBulkProgress> progresses = new ArrayList<>();
+
+        ChunkedBulkProgress result = chunkedBulkExecutor.update(member, member.id,
+                member.username.startsWith("chunk").and(member.age.lt(50)),
+                update -> update.set(member.age, member.age.add(1)),
+                2, null, progresses::add);
+
+        Assertions.assertThat(result.getAffectedRows()).isEqualTo(4);
+        Assertions.assertThat(result.isDone()).isTrue();
+        Assertions.assertThat(progresses).isNotEmpty();
+
+        List<Integer> ages = queryFactory.select(member.age).from(member)
+                .where(member.username.startsWith("chunk"))
+                .orderBy(member.age.asc())
+                .fetch();
+        Assertions.assertThat(ages).containsExactly(11, 21, 31, 41, 50, 60, 70, 80, 90, 100);
+    }
+
+    @Test
+    public void resumeDelete(){
+        Long firstId = queryFactory.select(member.id.min()).from(member)
+                .where(member.username.startsWith("chunk")).fetchOne();
+
+        //앞의 3건은 이미 처리되었다고 보고 그 다음부터 실행
+        ChunkedBulkProgress result = chunkedBulkExecutor.delete(member, member.id,
+                member.username.startsWith("chunk"), 3, firstId + 2, null);
+
+        Assertions.assertThat(result.getAffectedRows()).isEqualTo(7);
+        Assertions.assertThat(queryFactory.selectFrom(member).where(member.username.startsWith("chunk")).fetch())
+                .extracting("username").containsExactlyInAnyOrder("chunk1", "chunk2", "chunk3");
+    }
+
+    @Test
+    public void rejectInsideTransaction(){
+        Assertions.assertThatThrownBy(() -> committedData.inTransaction(() ->
+                chunkedBulkExecutor.delete(member, member.id, member.username.startsWith("chunk"), 3, null, null)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+}
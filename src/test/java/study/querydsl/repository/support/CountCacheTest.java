@@ -0,0 +1,67 @@
+package study.querydsl.repository.support;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CountCacheTest {
+
+    TableWriteNotifier notifier = new TableWriteNotifier();
+
+    @Test
+    public void hitAndMiss(){
+        CountCache cache = new CountCache(10, Duration.ofMinutes(1), notifier);
+        AtomicInteger countQueries = new AtomicInteger();
+
+        long first = cache.get("teamA", () -> { countQueries.incrementAndGet(); return 100L; });
+        long second = cache.get("teamA", () -> { countQueries.incrementAndGet(); return 200L; });
+
+        Assertions.assertThat(first).isEqualTo(100L);
+        Assertions.assertThat(second).isEqualTo(100L);
+        Assertions.assertThat(countQueries.get()).isEqualTo(1);
+        Assertions.assertThat(cache.getHitCount()).isEqualTo(1);
+        Assertions.assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void lruEviction(){
+        CountCache cache = new CountCache(2, Duration.ofMinutes(1), notifier);
+        cache.get("a", () -> 1L);
+        cache.get("b", () -> 2L);
+        cache.get("a", () -> 1L);
+        cache.get("c", () -> 3L);
+
+        //가장 오래 사용하지 않은 b 가 제거된다
+        Assertions.assertThat(cache.get("b", () -> 20L)).isEqualTo(20L);
+        Assertions.assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void ttlExpiration(){
+        CountCache cache = new CountCache(10, Duration.ZERO, notifier);
+        cache.get("a", () -> 1L);
+
+        Assertions.assertThat(cache.get("a", () -> 2L)).isEqualTo(2L);
+    }
+
+    @Test
+    public void invalidateOnMemberOrTeamWrite(){
+        CountCache cache = new CountCache(10, Duration.ofMinutes(1), notifier);
+        cache.get("a", () -> 1L);
+
+        notifier.inspect("select m.member_id from member m");
+        Assertions.assertThat(cache.get("a", () -> 2L)).isEqualTo(1L);
+
+        notifier.inspect("/* update study.querydsl.entity.Member */ update member set age=age+1 where age<?");
+        Assertions.assertThat(cache.get("a", () -> 2L)).isEqualTo(2L);
+
+        notifier.inspect("insert into team (name, team_id) values (?, ?)");
+        Assertions.assertThat(cache.get("a", () -> 3L)).isEqualTo(3L);
+
+        notifier.inspect("delete from hello where id=?");
+        Assertions.assertThat(cache.get("a", () -> 4L)).isEqualTo(3L);
+    }
+
+}
@@ -0,0 +1,158 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.CommittedData;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * count 는 별도 커넥션에서 실행되어 커밋된 데이터만 본다.
+ */
+@SpringBootTest
+class ParallelCountExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    ParallelCountExecutor parallelCountExecutor;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            for (int i = 1; i <= 5; i++) {
+                em.persist(new Member("pcount" + i, i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("pcount");
+    }
+
+    @Test
+    public void countOnSeparateConnection(){
+        RecordingCountQuery countQuery = new RecordingCountQuery(em, null);
+
+        Page<Member> page = parallelCountExecutor.getPage(contentQuery(2), PageRequest.of(0, 2), countQuery);
+
+        Assertions.assertThat(page.getContent()).hasSize(2);
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(5);
+        Assertions.assertThat(countQuery.events).hasSize(1);
+        Assertions.assertThat(countQuery.events.get(0)).startsWith("completed:parallel-count-");
+    }
+
+    @Test
+    public void unusedCountIsNotInterrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingCountQuery countQuery = new RecordingCountQuery(em, release);
+
+        //한 페이지에 다 들어오면 count 가 필요 없으므로 count 를 기다리지 않고 반환한다
+        Page<Member> page = parallelCountExecutor.getPage(contentQuery(10), PageRequest.of(0, 10), countQuery);
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(5);
+
+        //이미 실행 중인 count 는 인터럽트하지 않고 끝까지 실행한다 (결과는 버린다)
+        Thread.sleep(200);
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (countQuery.events.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertThat(countQuery.events).hasSize(1);
+        Assertions.assertThat(countQuery.events.get(0)).startsWith("completed:parallel-count-");
+    }
+
+    @Test
+    public void sequentialInWriteTransaction(){
+        committedData.inRolledBackTransaction(() -> {
+            em.persist(new Member("pcount6", 6));
+            RecordingCountQuery countQuery = new RecordingCountQuery(em, null);
+
+            //커밋 전 데이터는 별도 커넥션에서 보이지 않으므로 호출한 스레드에서 순차 실행한다
+            Page<Member> page = parallelCountExecutor.getPage(contentQuery(2), PageRequest.of(0, 2), countQuery);
+
+            Assertions.assertThat(page.getTotalElements()).isEqualTo(6);
+            Assertions.assertThat(countQuery.events).containsExactly("completed:" + Thread.currentThread().getName());
+        });
+    }
+
+    private JPAQuery<Member> contentQuery(int limit) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("pcount"))
+                .orderBy(member.id.asc())
+                .limit(limit);
+    }
+
+    /**
+     * count 를 실행한 스레드를 기록한다. release 가 있으면 count 전에 기다린다.
+     */
+    static class RecordingCountQuery extends JPAQuery<Member> {
+
+        private final CountDownLatch release;
+        private final List<String> events;
+
+        RecordingCountQuery(EntityManager em, CountDownLatch release) {
+            super(em);
+            this.release = release;
+            this.events = new CopyOnWriteArrayList<>();
+            select(member).from(member).where(member.username.startsWith("pcount"));
+        }
+
+        private RecordingCountQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata,
+                                    CountDownLatch release, List<String> events) {
+            super(em, templates, metadata);
+            this.release = release;
+            this.events = events;
+        }
+
+        @Override
+        public RecordingCountQuery clone(EntityManager entityManager, JPQLTemplates templates) {
+            RecordingCountQuery q = new RecordingCountQuery(entityManager, templates, getMetadata().clone(), release, events);
+            q.clone(this);
+            return q;
+        }
+
+        @Override
+        public long fetchCount() {
+            if (release != null) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    events.add("interrupted:" + Thread.currentThread().getName());
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            long count = super.fetchCount();
+            events.add("completed:" + Thread.currentThread().getName());
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 범위마다 별도 커넥션에서 조회하므로 커밋된 데이터만 보인다.
+ */
+@SpringBootTest
+class PartitionedScannerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PartitionedScanner partitionedScanner;
+
+    @Autowired
+    ReplicaReader replicaReader;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            for (int i = 1; i <= 10; i++) {
+                em.persist(new Member("scan" + i, i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("scan");
+    }
+
+    @Test
+    public void scan() throws Exception {
+        List<String> usernames;
+        try (Stream<Member> stream = partitionedScanner.scan(queryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("scan")), member.id, 4)) {
+            usernames = stream
+                    .peek(m -> Assertions.assertThat(em.contains(m)).isFalse())
+                    .map(Member::getUsername)
+                    .collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(usernames).containsExactlyInAnyOrder(
+                "scan1", "scan2", "scan3", "scan4", "scan5", "scan6", "scan7", "scan8", "scan9", "scan10");
+        assertIdle(partitionedScanner);
+    }
+
+    @Test
+    public void ranges(){
+        List<Long> ids = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.username.startsWith("scan"))
+                .orderBy(member.id.asc())
+                .fetch();
+        long minId = ids.get(0);
+        long maxId = ids.get(ids.size() - 1);
+
+        List<long[]> ranges = partitionedScanner.ranges(queryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("scan"))
+                .orderBy(member.id.asc()), member.id, 3);
+
+        //[min, max] 를 빈틈없이, 겹치지 않게 나눈다
+        Assertions.assertThat(ranges).hasSizeLessThanOrEqualTo(3);
+        Assertions.assertThat(ranges.get(0)[0]).isEqualTo(minId);
+        Assertions.assertThat(ranges.get(ranges.size() - 1)[1]).isEqualTo(maxId + 1);
+        for (int i = 1; i < ranges.size(); i++) {
+            Assertions.assertThat(ranges.get(i)[0]).isEqualTo(ranges.get(i - 1)[1]);
+        }
+    }
+
+    @Test
+    public void emptyResult(){
+        try (Stream<Member> stream = partitionedScanner.scan(queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("noSuchMember")), member.id, 4)) {
+            Assertions.assertThat(stream.count()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void closeAfterFirstRow() throws Exception {
+        //chunkSize 1 이면 큐에 2건만 들어가므로 첫 건을 읽은 시점에 나머지 범위는 큐가 비기를 기다리고 있다
+        PartitionedScanner scanner = new PartitionedScanner(replicaReader, 2, 1);
+        try {
+            try (Stream<Member> stream = scanner.scan(queryFactory
+                    .selectFrom(member)
+                    .where(member.username.startsWith("scan")), member.id, 4)) {
+                Optional<Member> first = stream.findFirst();
+
+                Assertions.assertThat(first).isPresent();
+                Assertions.assertThat(first.get().getUsername()).startsWith("scan");
+                Assertions.assertThat(scanner.isIdle()).isFalse();
+            }
+
+            //닫으면 기다리던 범위 조회가 멈추고 스레드가 반환된다
+            assertIdle(scanner);
+        } finally {
+            scanner.destroy();
+        }
+    }
+
+    @Test
+    public void failedRange() throws Exception {
+        AtomicInteger iterated = new AtomicInteger();
+
+        try (Stream<Member> stream = partitionedScanner.scan(new FailingRangeQuery(em, iterated), member.id, 4)) {
+            Assertions.assertThatThrownBy(() -> stream.collect(Collectors.toList()))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("range failed");
+        }
+
+        //실패하지 않은 범위도 취소되어 스레드가 반환된다
+        assertIdle(partitionedScanner);
+    }
+
+    @Test
+    public void rejectsWriteTransaction(){
+        Assertions.assertThatThrownBy(() -> committedData.inTransaction(() ->
+                        partitionedScanner.scan(queryFactory.selectFrom(member), member.id, 2)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void assertIdle(PartitionedScanner scanner) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!scanner.isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertThat(scanner.isIdle()).isTrue();
+    }
+
+    /**
+     * 처음 실행되는 범위 조회만 실패한다
+     */
+    static class FailingRangeQuery extends JPAQuery<Member> {
+
+        private final AtomicInteger iterated;
+
+        FailingRangeQuery(EntityManager em, AtomicInteger iterated) {
+            super(em);
+            this.iterated = iterated;
+            select(member).from(member).where(member.username.startsWith("scan"));
+        }
+
+        private FailingRangeQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata,
+                                  AtomicInteger iterated) {
+            super(em, templates, metadata);
+            this.iterated = iterated;
+        }
+
+        @Override
+        public FailingRangeQuery clone(EntityManager entityManager, JPQLTemplates templates) {
+            FailingRangeQuery q = new FailingRangeQuery(entityManager, templates, getMetadata().clone(), iterated);
+            q.clone(this);
+            return q;
+        }
+
+        @Override
+        public CloseableIterator<Member> iterate() {
+            if (iterated.getAndIncrement() == 0) {
+                throw new IllegalStateException("range failed");
+            }
+            return super.iterate();
+        }
+    }
+
+}
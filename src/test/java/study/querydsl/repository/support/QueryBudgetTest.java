@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class QueryBudgetTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QueryCounter queryCounter;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    NPlusOneService nPlusOneService;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void countNPlusOne(){
+        QueryCounter.Scope scope = queryCounter.start();
+
+        List<Member> members = memberJpaRepository.findAll_Querydsl();
+        members.forEach(m -> m.getTeam().getName());
+
+        //member 1번 + team 지연 로딩 2번
+        Assertions.assertThat(scope.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void withinBudget(){
+        QueryCounter.Scope scope = queryCounter.start();
+
+        memberJpaRepository.search(new MemberSearchCondition());
+
+        Assertions.assertThat(scope.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void countWritesAndTransaction(){
+        long before = queryCounter.getTransactionCount();
+
+        try (QueryCounter.Scope scope = queryCounter.start()) {
+            queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.username.eq("member1"))
+                    .execute();
+
+            Assertions.assertThat(scope.getCount()).isEqualTo(1);
+        }
+        Assertions.assertThat(queryCounter.getTransactionCount() - before).isEqualTo(1);
+    }
+
+    @Test
+    public void overBudget(){
+        Assertions.assertThatThrownBy(() -> nPlusOneService.teamNames())
+                .isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessageContaining("NPlusOneService.teamNames");
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        NPlusOneService nPlusOneService(MemberJpaRepository memberJpaRepository) {
+            return new NPlusOneService(memberJpaRepository);
+        }
+    }
+
+    static class NPlusOneService {
+
+        private final MemberJpaRepository memberJpaRepository;
+
+        NPlusOneService(MemberJpaRepository memberJpaRepository) {
+            this.memberJpaRepository = memberJpaRepository;
+        }
+
+        @QueryBudget(1)
+        public List<String> teamNames() {
+            return memberJpaRepository.findAll_Querydsl().stream()
+                    .map(m -> m.getTeam().getName())
+                    .collect(Collectors.toList());
+        }
+    }
+
+}
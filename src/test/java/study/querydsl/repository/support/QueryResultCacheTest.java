@@ -0,0 +1,140 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.CommittedData;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 캐시는 커밋된 데이터로 조회한 결과만 저장한다.
+ */
+@SpringBootTest
+class QueryResultCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    QueryCounter queryCounter;
+
+    @Autowired
+    QueryResultCache queryResultCache;
+
+    @Autowired
+    CommittedData committedData;
+
+    @BeforeEach
+    public void before(){
+        committedData.inTransaction(() -> {
+            Team cacheTeam = new Team("cacheTeam");
+            em.persist(cacheTeam);
+            em.persist(new Member("cache1", 10, cacheTeam));
+            em.persist(new Member("cache2", 20, cacheTeam));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        committedData.deleteByPrefix("cache");
+    }
+
+    @Test
+    public void aggregateCachedUntilBulkUpdate(){
+        Assertions.assertThat(averageAgeOfCacheTeam()).isEqualTo(15);
+
+        QueryCounter.Scope scope = queryCounter.start();
+        Assertions.assertThat(averageAgeOfCacheTeam()).isEqualTo(15);
+        Assertions.assertThat(scope.getCount()).isEqualTo(0);
+
+        //벌크 update 도 StatementInspector 를 거치므로 member 를 참조하는 항목이 제거된다
+        committedData.inTransaction(() -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(10))
+                .where(member.username.startsWith("cache"))
+                .execute());
+
+        scope = queryCounter.start();
+        Assertions.assertThat(averageAgeOfCacheTeam()).isEqualTo(25);
+        Assertions.assertThat(scope.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dtoQueryInvalidatedByFlush(){
+        int before = memberTestRepository.basicSelectCached().size();
+
+        QueryCounter.Scope scope = queryCounter.start();
+        Assertions.assertThat(memberTestRepository.basicSelectCached()).hasSize(before);
+        Assertions.assertThat(scope.getCount()).isEqualTo(0);
+
+        committedData.inTransaction(() -> {
+            em.persist(new Member("cache3", 30));
+            //flush 하지 않은 변경도 조회 전에 반영되고, 커밋 전 결과는 캐시하지 않는다
+            Assertions.assertThat(memberTestRepository.basicSelectCached()).hasSize(before + 1);
+        });
+
+        Assertions.assertThat(memberTestRepository.basicSelectCached()).hasSize(before + 1);
+    }
+
+    @Test
+    public void rejectEntityProjection(){
+        Assertions.assertThatThrownBy(() -> queryResultCache.fetch(queryFactory.selectFrom(member)))
+                .isInstanceOf(IllegalArgumentException.class);
+        //Tuple 안의 엔티티도 거부한다
+        Assertions.assertThatThrownBy(() -> queryResultCache.fetch(queryFactory
+                        .select(member, team.name)
+                        .from(member)
+                        .join(member.team, team)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void fingerprint(){
+        QueryFingerprint age10 = QueryFingerprint.of(null, queryFactory.selectFrom(member)
+                .join(member.team, team).where(member.age.gt(10)).getMetadata());
+        QueryFingerprint sameAge10 = QueryFingerprint.of(null, queryFactory.selectFrom(member)
+                .join(member.team, team).where(member.age.gt(10)).getMetadata());
+        QueryFingerprint age20 = QueryFingerprint.of(null, queryFactory.selectFrom(member)
+                .join(member.team, team).where(member.age.gt(20)).getMetadata());
+        QueryFingerprint otherTenant = QueryFingerprint.of("tenantB", queryFactory.selectFrom(member)
+                .join(member.team, team).where(member.age.gt(10)).getMetadata());
+        QueryFingerprint limited = QueryFingerprint.of(null, queryFactory.selectFrom(member)
+                .join(member.team, team).where(member.age.gt(10)).limit(1).getMetadata());
+
+        Assertions.assertThat(age10).isEqualTo(sameAge10);
+        Assertions.assertThat(age10.hashCode()).isEqualTo(sameAge10.hashCode());
+        Assertions.assertThat(age10).isNotEqualTo(age20);
+        Assertions.assertThat(age10).isNotEqualTo(otherTenant);
+        Assertions.assertThat(age10).isNotEqualTo(limited);
+        Assertions.assertThat(age10.getEntityTypes()).containsExactlyInAnyOrder(Member.class, Team.class);
+    }
+
+    private Double averageAgeOfCacheTeam() {
+        List<Tuple> result = memberTestRepository.averageAgeByTeam();
+        return result.stream()
+                .filter(tuple -> "cacheTeam".equals(tuple.get(team.name)))
+                .map(tuple -> tuple.get(member.age.avg()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
@@ -0,0 +1,107 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.JPAProvider;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class QueryTimerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void recordQuery(){
+        em.persist(new Member("timer1", 10));
+
+        queryFactory.selectFrom(member).where(member.username.eq("timer1")).fetch();
+        queryFactory.selectFrom(member).where(member.username.eq("timer2")).fetch();
+        queryFactory.selectFrom(member).where(member.username.eq("timer1")).fetchCount();
+
+        Collection<Timer> fetchTimers = meterRegistry.find("querydsl.query").tag("operation", "fetch").timers();
+        //조건 값만 다른 쿼리는 같은 지문
+        String fingerprint = new QueryTimer(new SimpleMeterRegistry(), Duration.ofSeconds(1), 10)
+                .fingerprint(queryFactory.selectFrom(member).where(member.username.eq("any")).toString());
+        Timer timer = meterRegistry.find("querydsl.query")
+                .tags("operation", "fetch", "fingerprint", fingerprint)
+                .timer();
+
+        Assertions.assertThat(fetchTimers).isNotEmpty();
+        Assertions.assertThat(timer).isNotNull();
+        Assertions.assertThat(timer.count()).isGreaterThanOrEqualTo(2);
+        Assertions.assertThat(meterRegistry.find("querydsl.query").tag("operation", "fetchCount").timer()).isNotNull();
+    }
+
+    @Test
+    public void recordClonedQuery(){
+        long before = fetchCount();
+
+        queryFactory.selectFrom(member).clone(em).fetch();
+
+        Assertions.assertThat(fetchCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void fingerprintOncePerShape(){
+        List<String> serialized = new ArrayList<>();
+        QueryTimer queryTimer = new QueryTimer(new SimpleMeterRegistry(), Duration.ofSeconds(1), 10) {
+            @Override
+            String fingerprint(String jpql) {
+                serialized.add(jpql);
+                return super.fingerprint(jpql);
+            }
+        };
+        TimedJPAQuery<Member> query = new TimedJPAQuery<>(em, JPAProvider.getTemplates(em), queryTimer);
+        query.select(member).from(member).where(member.age.gt(10));
+
+        //다시 실행하거나 복사해도 모양이 같으면 다시 직렬화하지 않는다
+        query.fetch();
+        query.offset(1).limit(1).fetch();
+        query.clone(em).fetch();
+        Assertions.assertThat(serialized).hasSize(1);
+
+        query.where(member.username.eq("timer1")).fetch();
+        Assertions.assertThat(serialized).hasSize(2);
+        Assertions.assertThat(serialized.get(1)).contains("username");
+    }
+
+    @Test
+    public void maxFingerprints(){
+        QueryTimer queryTimer = new QueryTimer(new SimpleMeterRegistry(), Duration.ofSeconds(1), 1);
+
+        String first = queryTimer.fingerprint("select member from Member member");
+
+        Assertions.assertThat(queryTimer.fingerprint("select member from Member member")).isEqualTo(first);
+        Assertions.assertThat(queryTimer.fingerprint("select team from Team team")).isEqualTo(QueryTimer.OTHER);
+    }
+
+    private long fetchCount() {
+        return meterRegistry.find("querydsl.query").tag("operation", "fetch").timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+}
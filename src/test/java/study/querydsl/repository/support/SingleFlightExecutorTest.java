@@ -0,0 +1,107 @@
+package study.querydsl.repository.support;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.CommittedData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 트랜잭션 밖에서 호출할 때만 결과를 공유한다.
+ */
+@SpringBootTest
+class SingleFlightExecutorTest {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedData committedData;
+
+    @Autowired
+    TableWriteNotifier tableWriteNotifier;
+
+    @Test
+    public void shareInFlight() throws Exception {
+        SingleFlightExecutor singleFlight = new SingleFlightExecutor(transactionManager, tableWriteNotifier, Duration.ZERO, 10);
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> singleFlight.execute("key", () -> {
+                    executed.incrementAndGet();
+                    await(release);
+                    return "result";
+                })));
+            }
+            //첫 호출이 실행 중인 동안 나머지가 모두 기다리게 한다
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (singleFlight.getSharedCount() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                Assertions.assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("result");
+            }
+            Assertions.assertThat(executed.get()).isEqualTo(1);
+            Assertions.assertThat(singleFlight.getSharedCount()).isEqualTo(callers - 1);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cacheResultUntilWrite(){
+        SingleFlightExecutor singleFlight = new SingleFlightExecutor(transactionManager, tableWriteNotifier, Duration.ofMinutes(1), 10);
+        AtomicInteger executed = new AtomicInteger();
+
+        singleFlight.execute("key", executed::incrementAndGet);
+        singleFlight.execute("key", executed::incrementAndGet);
+        Assertions.assertThat(executed.get()).isEqualTo(1);
+        Assertions.assertThat(singleFlight.getCachedCount()).isEqualTo(1);
+
+        //member 테이블 쓰기가 일어나면 캐시된 결과를 버린다
+        tableWriteNotifier.inspect("update member set age=age+1");
+        singleFlight.execute("key", executed::incrementAndGet);
+        Assertions.assertThat(executed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void notSharedInTransaction(){
+        SingleFlightExecutor singleFlight = new SingleFlightExecutor(transactionManager, tableWriteNotifier, Duration.ofMinutes(1), 10);
+        AtomicInteger executed = new AtomicInteger();
+
+        committedData.inTransaction(() -> {
+            singleFlight.execute("key", executed::incrementAndGet);
+            singleFlight.execute("key", executed::incrementAndGet);
+        });
+
+        Assertions.assertThat(executed.get()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}